@@ -0,0 +1,55 @@
+package collect;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+// the allowed extensions and the ignore strings of a collector, applied while walking the trees.
+// subtrees whose paths contain an ignore string are not walked, since every path under them contains it too.
+class AllowedPathTreeFilter extends TreeFilter {
+    private final PathFilter pathFilter;
+
+    // removed files are named /dev/null like the diff entries, so they are kept if /dev/null is allowed.
+    private final boolean devNullAllowed;
+
+    AllowedPathTreeFilter(PathFilter pathFilter) {
+        this.pathFilter = pathFilter;
+        this.devNullAllowed = isAllowed(DiffEntry.DEV_NULL);
+    }
+
+    // whether the file path passes the filter, like the extension and the path of FileName.
+    boolean isAllowed(String path) {
+        return pathFilter.isAllowed(path);
+    }
+
+    // whether the entry of the old and the new tree is reported as /dev/null, which means the file is
+    // deleted or its type is changed.
+    static boolean isRemoved(int oldMode, int newMode) {
+        return newMode == 0 || (oldMode != 0 && (oldMode & FileMode.TYPE_MASK) != (newMode & FileMode.TYPE_MASK));
+    }
+
+    @Override
+    public boolean include(TreeWalk walker) {
+        if (walker.isSubtree()) {
+            return devNullAllowed || !pathFilter.containsIgnoreString(walker.getPathString());
+        }
+
+        if (devNullAllowed && isRemoved(walker.getRawMode(0), walker.getRawMode(1))) {
+            return true;
+        }
+
+        return isAllowed(walker.getPathString());
+    }
+
+    @Override
+    public boolean shouldBeRecursive() {
+        return false;
+    }
+
+    // nothing is changed while walking, so it can be shared by walks.
+    @Override
+    public TreeFilter clone() {
+        return this;
+    }
+}
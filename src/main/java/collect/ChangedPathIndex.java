@@ -0,0 +1,410 @@
+package collect;
+
+import model.FileName;
+import model.PathDictionary;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// changed paths of commits diffed with their first parents, kept in the cache directory and shared by later runs.
+// paths are not filtered, so runs with other extensions, ignore strings or branches reuse them.
+// the path file has the paths numbered by their order, and the commit file has a record of each commit,
+// its id and the numbers of its changed paths. both are only appended.
+// the table has the lengths of them written by the last successful run, the offsets of the paths,
+// and the paths and the commits sorted by their bytes, which are binary searched in the mapped table.
+// records after the lengths are not read, and overwritten later.
+// a new table is written to the other one of two table files, and the file naming the current one is replaced
+// at once, so a failed run leaves the previous table. the mapped table is never written.
+// the index is locked until it's closed, so concurrent runs don't append at once.
+class ChangedPathIndex implements Closeable {
+    private static final String PATH_FILE = "paths";
+    private static final String COMMIT_FILE = "commits";
+    private static final String[] TABLE_FILES = {"table0", "table1"};
+    private static final String CURRENT_FILE = "current"; // index of the current table file
+    private static final String LOCK_FILE = "lock";
+
+    private static final int HEADER_SIZE = 24; // path count, path file length, commit count, commit file length
+    private static final int COMMIT_ENTRY_SIZE = Constants.OBJECT_ID_LENGTH + 8; // id and offset in the commit file
+
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final File directory;
+    private final PathFilter pathFilter;
+    private final PathDictionary pathDictionary;
+
+    private final int table; // index of the current table file. -1 if nothing is indexed yet.
+    private final ByteBuffer tableBuffer; // header, offsets of the paths, sorted path numbers and sorted commits
+    private final ByteBuffer pathBuffer;
+    private final ByteBuffer commitBuffer;
+    private final int pathCount;
+    private final long pathLength;
+    private final int commitCount;
+    private final long commitLength;
+    private final int sortedPathStart; // position of the sorted path numbers in the table
+    private final int commitStart; // position of the sorted commits in the table
+
+    // appended by close()
+    private final ByteArrayOutputStream newPaths = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream newCommits = new ByteArrayOutputStream();
+    private final List<byte[]> newPathBytes = new ArrayList<>(); // K: number - pathCount
+    private final List<Long> newPathOffsets = new ArrayList<>(); // K: number - pathCount
+    private final Map<String, Integer> newPathIds = new HashMap<>();
+    private final Map<ObjectId, int[]> newCommitPaths = new HashMap<>();
+    private final TreeMap<ObjectId, Long> newCommitOffsets = new TreeMap<>(); // V: offset of the path count
+
+    // names of the paths passing the filter, made once by a run. null if not checked or not allowed.
+    private FileName[] names = new FileName[0];
+    private boolean[] checked = new boolean[0];
+
+    ChangedPathIndex(File directory, PathFilter pathFilter, PathDictionary pathDictionary) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create the changed path index directory.");
+        }
+
+        this.directory = directory;
+        this.pathFilter = pathFilter;
+        this.pathDictionary = pathDictionary;
+        this.lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        try {
+            this.lock = lockChannel.lock();
+            this.table = readCurrentTable();
+
+            if (table < 0) {
+                this.tableBuffer = ByteBuffer.allocate(HEADER_SIZE);
+            } else {
+                try (FileChannel channel = FileChannel.open(new File(directory, TABLE_FILES[table]).toPath(),
+                        StandardOpenOption.READ)) {
+                    this.tableBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+
+            this.pathCount = tableBuffer.getInt(0);
+            this.pathLength = tableBuffer.getLong(4);
+            this.commitCount = tableBuffer.getInt(12);
+            this.commitLength = tableBuffer.getLong(16);
+            this.sortedPathStart = HEADER_SIZE + pathCount * 8;
+            this.commitStart = sortedPathStart + pathCount * 4;
+            this.pathBuffer = map(PATH_FILE, pathLength);
+            this.commitBuffer = map(COMMIT_FILE, commitLength);
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    // numbers of the changed paths of the commit, or null if it's not indexed.
+    int[] get(AnyObjectId commit) {
+        int[] result = newCommitPaths.get(commit);
+
+        if (result != null) {
+            return result;
+        }
+
+        byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+        commit.copyRawTo(id, 0);
+
+        int low = 0, high = commitCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = commitStart + middle * COMMIT_ENTRY_SIZE;
+            int compared = compare(id, tableBuffer, position, Constants.OBJECT_ID_LENGTH);
+
+            if (compared < 0) {
+                high = middle - 1;
+            } else if (compared > 0) {
+                low = middle + 1;
+            } else {
+                int offset = (int) tableBuffer.getLong(position + Constants.OBJECT_ID_LENGTH);
+                result = new int[commitBuffer.getInt(offset)];
+
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = commitBuffer.getInt(offset + 4 + i * 4);
+                }
+
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    // indexes the changed paths of a commit, and returns their numbers.
+    int[] put(AnyObjectId commit, List<String> changedPaths) {
+        int[] result = new int[changedPaths.size()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getPathId(changedPaths.get(i));
+        }
+
+        byte[] record = new byte[Constants.OBJECT_ID_LENGTH + 4 + result.length * 4];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        commit.copyRawTo(record, 0);
+        buffer.position(Constants.OBJECT_ID_LENGTH);
+        buffer.putInt(result.length);
+
+        for (int id : result) {
+            buffer.putInt(id);
+        }
+
+        newCommitOffsets.put(commit.copy(), commitLength + newCommits.size() + Constants.OBJECT_ID_LENGTH);
+        newCommits.write(record, 0, record.length);
+        newCommitPaths.put(commit.copy(), result);
+
+        return result;
+    }
+
+    // changed files of the numbered paths passing the filter.
+    TreeSet<FileName> getChangedFiles(int[] changedPaths) {
+        TreeSet<FileName> result = new TreeSet<>();
+
+        for (int id : changedPaths) {
+            if (id >= checked.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, id + 1));
+                checked = Arrays.copyOf(checked, names.length);
+            }
+
+            if (!checked[id]) {
+                String path = getPath(id);
+                checked[id] = true;
+                names[id] = pathFilter.isAllowed(path) ? new FileName(path, pathDictionary) : null;
+            }
+
+            if (names[id] != null) {
+                result.add(names[id]);
+            }
+        }
+
+        return result;
+    }
+
+    // the records are written before the table, and the table before the current file.
+    @Override
+    public void close() throws IOException {
+        try {
+            if (newPathBytes.isEmpty() && newCommitOffsets.isEmpty()) {
+                return;
+            }
+
+            long newPathLength = write(PATH_FILE, pathLength, newPaths);
+            long newCommitLength = write(COMMIT_FILE, commitLength, newCommits);
+            int newTable = table < 0 ? 0 : 1 - table;
+
+            writeTable(new File(directory, TABLE_FILES[newTable]), newPathLength, newCommitLength);
+
+            File temp = new File(directory, CURRENT_FILE + ".tmp");
+
+            try (FileOutputStream output = new FileOutputStream(temp)) {
+                output.write(newTable);
+                output.getChannel().force(false);
+            }
+
+            Files.move(temp.toPath(), new File(directory, CURRENT_FILE).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private int readCurrentTable() throws IOException {
+        File current = new File(directory, CURRENT_FILE);
+
+        if (!current.exists()) {
+            return -1;
+        }
+
+        byte[] bytes = Files.readAllBytes(current.toPath());
+
+        return bytes.length == 1 && bytes[0] >= 0 && bytes[0] < TABLE_FILES.length ? bytes[0] : -1;
+    }
+
+    // number of the path, which is added if it's not indexed.
+    private int getPathId(String path) {
+        Integer newId = newPathIds.get(path);
+
+        if (newId != null) {
+            return newId;
+        }
+
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = pathCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = tableBuffer.getInt(sortedPathStart + middle * 4);
+            int compared = comparePath(bytes, getPathOffset(id));
+
+            if (compared < 0) {
+                high = middle - 1;
+            } else if (compared > 0) {
+                low = middle + 1;
+            } else {
+                return id;
+            }
+        }
+
+        int id = pathCount + newPathBytes.size();
+        newPathIds.put(path, id);
+        newPathBytes.add(bytes);
+        newPathOffsets.add(pathLength + newPaths.size());
+        writeBytes(newPaths, bytes);
+
+        return id;
+    }
+
+    private String getPath(int id) {
+        if (id >= pathCount) {
+            return new String(newPathBytes.get(id - pathCount), StandardCharsets.UTF_8);
+        }
+
+        int offset = getPathOffset(id);
+        byte[] bytes = new byte[pathBuffer.getInt(offset)];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = pathBuffer.get(offset + 4 + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int getPathOffset(int id) {
+        return (int) tableBuffer.getLong(HEADER_SIZE + id * 8);
+    }
+
+    // compares the bytes with the path at the offset of the path file.
+    private int comparePath(byte[] bytes, int offset) {
+        int length = pathBuffer.getInt(offset);
+        int compared = compare(bytes, pathBuffer, offset + 4, Math.min(bytes.length, length));
+
+        return compared != 0 ? compared : bytes.length - length;
+    }
+
+    // the new paths and commits are merged into the sorted ones of the current table.
+    private void writeTable(File file, long newPathLength, long newCommitLength) throws IOException {
+        Integer[] sortedNewPaths = new Integer[newPathBytes.size()];
+
+        for (int i = 0; i < sortedNewPaths.length; i++) {
+            sortedNewPaths[i] = i;
+        }
+
+        Arrays.sort(sortedNewPaths, (o1, o2) -> compare(newPathBytes.get(o1), newPathBytes.get(o2)));
+
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+
+            output.writeInt(pathCount + newPathBytes.size());
+            output.writeLong(newPathLength);
+            output.writeInt(commitCount + newCommitOffsets.size());
+            output.writeLong(newCommitLength);
+
+            for (int id = 0; id < pathCount; id++) {
+                output.writeLong(getPathOffset(id));
+            }
+
+            for (long offset : newPathOffsets) {
+                output.writeLong(offset);
+            }
+
+            for (int rank = 0, newRank = 0; rank < pathCount || newRank < sortedNewPaths.length; ) {
+                int id = rank < pathCount ? tableBuffer.getInt(sortedPathStart + rank * 4) : -1;
+
+                if (id < 0 || (newRank < sortedNewPaths.length
+                        && comparePath(newPathBytes.get(sortedNewPaths[newRank]), getPathOffset(id)) < 0)) {
+                    output.writeInt(pathCount + sortedNewPaths[newRank++]);
+                } else {
+                    output.writeInt(id);
+                    rank++;
+                }
+            }
+
+            Iterator<Map.Entry<ObjectId, Long>> commits = newCommitOffsets.entrySet().iterator();
+            Map.Entry<ObjectId, Long> commit = commits.hasNext() ? commits.next() : null;
+            byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+
+            for (int rank = 0; rank < commitCount || commit != null; ) {
+                int position = commitStart + rank * COMMIT_ENTRY_SIZE;
+
+                if (commit != null) {
+                    commit.getKey().copyRawTo(id, 0);
+                }
+
+                if (rank >= commitCount
+                        || (commit != null && compare(id, tableBuffer, position, Constants.OBJECT_ID_LENGTH) < 0)) {
+                    output.write(id);
+                    output.writeLong(commit.getValue());
+                    commit = commits.hasNext() ? commits.next() : null;
+                } else {
+                    for (int i = 0; i < COMMIT_ENTRY_SIZE; i++) {
+                        output.write(tableBuffer.get(position + i));
+                    }
+
+                    rank++;
+                }
+            }
+
+            output.flush();
+            stream.getChannel().force(false);
+        }
+    }
+
+    private ByteBuffer map(String name, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(directory, name).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+    }
+
+    private long write(String name, long position, ByteArrayOutputStream bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+        try (FileChannel channel = FileChannel.open(new File(directory, name).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+
+            channel.force(false);
+        }
+
+        return position;
+    }
+
+    // compares the bytes as unsigned values, which is the order of object ids too.
+    private static int compare(byte[] bytes, ByteBuffer buffer, int position, int length) {
+        for (int i = 0; i < length; i++) {
+            int compared = (bytes[i] & 0xff) - (buffer.get(position + i) & 0xff);
+
+            if (compared != 0) {
+                return compared;
+            }
+        }
+
+        return 0;
+    }
+
+    private static int compare(byte[] bytes, byte[] otherBytes) {
+        int compared = compare(bytes, ByteBuffer.wrap(otherBytes), 0, Math.min(bytes.length, otherBytes.length));
+
+        return compared != 0 ? compared : bytes.length - otherBytes.length;
+    }
+
+    private static void writeBytes(ByteArrayOutputStream stream, byte[] bytes) {
+        stream.write(bytes.length >>> 24);
+        stream.write(bytes.length >>> 16);
+        stream.write(bytes.length >>> 8);
+        stream.write(bytes.length);
+        stream.write(bytes, 0, bytes.length);
+    }
+}
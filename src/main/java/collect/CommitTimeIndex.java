@@ -0,0 +1,125 @@
+package collect;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// the first-parent chain of a branch from the root to the head, with the commit times, kept in a file.
+// when the branch moves on, only the commits after the indexed head are parsed and appended.
+// a head which doesn't have the indexed head on its chain, like a rewritten branch, is indexed again.
+class CommitTimeIndex {
+    private static final int RECORD_SIZE = Constants.OBJECT_ID_LENGTH + 8; // id, commit time and parent count
+
+    private final File file;
+
+    CommitTimeIndex(File file) {
+        this.file = file;
+    }
+
+    // commits to start the walk from, so it reaches the commits not newer than the time like the walk from the head:
+    // the newest commit of the chain not newer than the time, and the other parents of the merges above it,
+    // since branches merged later may have older commits. commits above it on the chain are never parsed.
+    List<ObjectId> getStartCommits(RevWalk walk, ObjectId head, long to) throws IOException {
+        File directory = file.getParentFile();
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create the commit time index directory.");
+        }
+
+        List<ObjectId> result = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+
+            try {
+                int count = update(channel, walk, walk.parseCommit(head));
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * RECORD_SIZE);
+                byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+
+                for (int i = count - 1; i >= 0; i--) {
+                    int position = i * RECORD_SIZE;
+                    long commitTime = buffer.getInt(position + Constants.OBJECT_ID_LENGTH) * 1000L;
+                    int parentCount = buffer.getInt(position + Constants.OBJECT_ID_LENGTH + 4);
+
+                    buffer.position(position);
+                    buffer.get(id);
+
+                    if (commitTime <= to) {
+                        result.add(ObjectId.fromRaw(id));
+                        break;
+                    }
+
+                    if (parentCount > 1) {
+                        RevCommit merge = walk.parseCommit(ObjectId.fromRaw(id));
+
+                        for (int p = 1; p < parentCount; p++) {
+                            result.add(merge.getParent(p).copy());
+                        }
+                    }
+                }
+            } finally {
+                lock.release();
+            }
+        }
+
+        return result;
+    }
+
+    // appends the chain of the head after the indexed head, and returns the number of records.
+    // a partial record left by a failed write is dropped.
+    private static int update(FileChannel channel, RevWalk walk, RevCommit head) throws IOException {
+        long size = channel.size() - channel.size() % RECORD_SIZE;
+        ObjectId indexedHead = null;
+
+        if (size > 0) {
+            ByteBuffer buffer = ByteBuffer.allocate(Constants.OBJECT_ID_LENGTH);
+            channel.read(buffer, size - RECORD_SIZE);
+            indexedHead = ObjectId.fromRaw(buffer.array());
+        }
+
+        List<RevCommit> chain = new ArrayList<>();
+        RevCommit commit = head;
+
+        while (commit != null && !commit.equals(indexedHead)) {
+            walk.parseHeaders(commit);
+            chain.add(commit);
+            commit = commit.getParentCount() > 0 ? commit.getParent(0) : null;
+        }
+
+        if (commit == null) {
+            size = 0;
+        }
+
+        byte[] records = new byte[chain.size() * RECORD_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            RevCommit chained = chain.get(i);
+            chained.copyRawTo(records, buffer.position());
+            buffer.position(buffer.position() + Constants.OBJECT_ID_LENGTH);
+            buffer.putInt(chained.getCommitTime());
+            buffer.putInt(chained.getParentCount());
+        }
+
+        buffer.flip();
+        channel.truncate(size);
+
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer, size);
+        }
+
+        return (int) (size / RECORD_SIZE);
+    }
+}
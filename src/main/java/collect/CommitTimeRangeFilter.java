@@ -0,0 +1,40 @@
+package collect;
+
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+// the from/to range of a collector in milliseconds, applied by the walk. a bound not greater than 0 is unset.
+// commits newer than the range are skipped, and the walk is stopped at the first commit older than it.
+class CommitTimeRangeFilter extends RevFilter {
+    private final long from;
+    private final long to;
+
+    CommitTimeRangeFilter(long from, long to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean include(RevWalk walker, RevCommit commit) {
+        long commitTime = commit.getCommitTime() * 1000L;
+
+        if (from > 0 && commitTime < from) {
+            throw StopWalkException.INSTANCE;
+        }
+
+        return to <= 0 || commitTime <= to;
+    }
+
+    @Override
+    public boolean requiresCommitBody() {
+        return false;
+    }
+
+    // nothing is changed while walking, so it can be shared by walks.
+    @Override
+    public RevFilter clone() {
+        return this;
+    }
+}
@@ -0,0 +1,404 @@
+package collect;
+
+import model.FileName;
+import model.Revision;
+import model.RevisionStore;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// collects the revisions of a local git repository with the git binary, which diffs commits much faster than jgit.
+// the NUL-delimited output of "git log" is parsed while it's read, and commits are taken like GitRevisionCollector:
+// merges and commits without parents are skipped, renames are not detected,
+// and deleted files and files changing their types are reported as /dev/null.
+public class GitCliRevisionCollector extends RevisionCollector<GitCliRevisionCollector> {
+    public static final String GIT_EXECUTABLE = "git";
+
+    private static final byte COMMIT_MARKER = 1; // starts the header of each commit
+    private static final String LOG_FORMAT = "--format=%x01%H %ct %P%x00%ae%x00%B";
+
+    private final File gitDirectory;
+    private final String branch;
+
+    private Revision latestRevision = null;
+    private String latestId = null; // latest commit with changed files, read by readLog()
+    private long latestTime = 0;
+    private List<String> heads = Collections.emptyList();
+
+    public GitCliRevisionCollector(File gitDirectory, String branch) {
+        this.gitDirectory = gitDirectory;
+        this.branch = branch;
+    }
+
+    // whether the git binary can be run.
+    public static boolean isAvailable() {
+        try {
+            // the version is short enough not to block the process.
+            return new ProcessBuilder(GIT_EXECUTABLE, "--version").start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public GitCliRevisionCollector getThis() {
+        return this;
+    }
+
+    @Override
+    public RevisionStore collect() throws Exception {
+        RevisionStore revisions = new RevisionStore();
+
+        // the log walks from the resolved head, which is saved as the processed head of the next run.
+        String head = resolve("refs/heads/" + branch);
+        List<String> arguments = new ArrayList<>(Arrays.asList("log", "--no-merges", "--no-renames", "--no-color",
+                "--no-ext-diff", "--no-show-signature", "-z", "--name-status", LOG_FORMAT,
+                head == null ? "refs/heads/" + branch : head));
+
+        // git filters by the commit time in seconds, and the exact boundaries are checked by readLog().
+        if (getFrom() > 0) {
+            arguments.add("--since=@" + getFrom() / 1000);
+        }
+
+        if (getTo() > 0) {
+            arguments.add("--until=@" + getTo() / 1000);
+        }
+
+        // the history of the processed heads was collected by a previous run.
+        for (String processed : getProcessedCommits(head)) {
+            arguments.add("^" + processed);
+        }
+
+        arguments.add("--");
+        heads = head == null ? Collections.emptyList() : Collections.singletonList(head);
+
+        Process process = start(arguments.toArray(new String[arguments.size()]));
+        boolean stopped = false;
+        boolean completed = false;
+
+        try (InputStream input = process.getInputStream()) {
+            stopped = !readLog(input, revisions);
+            completed = true;
+        } finally {
+            // the process is not waited for if the output is not read to the end.
+            if (stopped || !completed) {
+                process.destroy();
+            }
+        }
+
+        if (process.waitFor() != 0 && !stopped) {
+            throw new IOException("git log exited with " + process.exitValue());
+        }
+
+        latestRevision = latestId == null ? null : getAllFiles(latestId, latestTime);
+
+        return revisions;
+    }
+
+    // parses the output of git log with LOG_FORMAT into the revisions.
+    // returns false if the log is stopped before its end by the limit or the from time.
+    boolean readLog(InputStream input, RevisionStore revisions) throws IOException {
+        PathFilter pathFilter = getPathFilter();
+        long limit = getLimit() > 0 ? getLimit() : Long.MAX_VALUE;
+
+        latestId = null;
+        latestTime = 0;
+
+        // commit info are sorted by time desc.
+        TokenReader tokens = new TokenReader(input);
+        boolean hasToken = tokens.next();
+
+        while (hasToken) {
+            // header: the marker, the id, the commit time and the parents
+            int offset = tokens.skip('\n');
+
+            if (offset >= tokens.length() || tokens.byteAt(offset) != COMMIT_MARKER) {
+                throw new IOException("Unexpected output of git log.");
+            }
+
+            int idEnd = tokens.indexOf(' ', offset + 1);
+            int timeEnd = tokens.indexOf(' ', idEnd + 1);
+            String id = tokens.decode(offset + 1, idEnd);
+            long commitTime = tokens.parseLong(idEnd + 1, timeEnd) * 1000L;
+            int parentCount = 0;
+
+            for (int i = timeEnd; i + 1 < tokens.length(); i = tokens.indexOf(' ', i + 1)) {
+                parentCount++;
+            }
+
+            if (limit < 0 || (getFrom() > 0 && commitTime < getFrom())) {
+                return false;
+            }
+
+            boolean used = getTo() <= 0 || commitTime <= getTo();
+
+            if (used) {
+                Logger.INSTANCE.info(String.format("Commit %s (%s)", id, new Date(commitTime)));
+            }
+
+            // fixme: can't get initial commit files
+            used = used && parentCount == 1;
+
+            // the author email and the message
+            tokens.next();
+            String author = used ? tokens.decode(0, tokens.length()) : null;
+            tokens.next();
+            String message = used ? tokens.decode(0, tokens.length()) : null;
+            TreeSet<FileName> changedFiles = new TreeSet<>();
+
+            // changes: the status and the path, until the next header
+            for (hasToken = tokens.next(); hasToken; hasToken = tokens.next()) {
+                offset = tokens.skip('\n');
+
+                if (offset < tokens.length() && tokens.byteAt(offset) == COMMIT_MARKER) {
+                    break;
+                }
+
+                byte status = offset < tokens.length() ? tokens.byteAt(offset) : 0;
+
+                if (!tokens.next()) {
+                    throw new IOException("Unexpected end of git log.");
+                }
+
+                if (!used) {
+                    continue;
+                }
+
+                // deleted or changing its type
+                if ((status == 'D' || status == 'T') && pathFilter.isAllowed(DiffEntry.DEV_NULL)) {
+                    changedFiles.add(new FileName(DiffEntry.DEV_NULL, getPathDictionary()));
+                }
+
+                if (status != 'D') {
+                    String path = tokens.decode(0, tokens.length());
+
+                    if (pathFilter.isAllowed(path)) {
+                        changedFiles.add(new FileName(path, getPathDictionary()));
+                    }
+                }
+            }
+
+            if (!used) {
+                continue;
+            }
+
+            // only use commits with changes files
+            if (changedFiles.size() > 0) {
+                if (latestId == null || commitTime > latestTime) {
+                    latestId = id;
+                    latestTime = commitTime;
+                }
+
+                revisions.add(id, commitTime, author, message, changedFiles);
+            }
+
+            limit--;
+        }
+
+        return true;
+    }
+
+    @Override
+    public Revision getLatestRevision() {
+        return latestRevision;
+    }
+
+    @Override
+    public List<String> getHeads() {
+        return heads;
+    }
+
+    // ids of the processed heads, or none if any of them is not in the history of the head.
+    private List<String> getProcessedCommits(String head) throws Exception {
+        List<String> commits = new ArrayList<>();
+
+        for (String id : getProcessedHeads()) {
+            String commit = ObjectId.isId(id) ? resolve(id) : null;
+
+            if (head == null || commit == null || run("merge-base", "--is-ancestor", commit, head) != 0) {
+                Logger.INSTANCE.info("The processed head " + id + " is not in the history of " + branch + ".");
+                setProcessedHeads(Collections.emptyList());
+
+                return Collections.emptyList();
+            }
+
+            commits.add(commit);
+        }
+
+        return commits;
+    }
+
+    // the id of the commit of the revision, or null if it's not found.
+    private String resolve(String revision) throws Exception {
+        Process process = start("rev-parse", "--verify", "--quiet", revision + "^{commit}");
+        String id;
+
+        try (InputStream input = process.getInputStream()) {
+            id = IOUtils.toString(input, StandardCharsets.UTF_8).trim();
+        }
+
+        return process.waitFor() == 0 && !id.isEmpty() ? id : null;
+    }
+
+    // the exit value of a command without output.
+    private int run(String... arguments) throws Exception {
+        Process process = start(arguments);
+
+        try (InputStream input = process.getInputStream()) {
+            IOUtils.skip(input, Long.MAX_VALUE);
+        }
+
+        return process.waitFor();
+    }
+
+    private Revision getAllFiles(String id, long time) throws Exception {
+        Revision result = new Revision(id, time, "", "");
+        Process process = start("ls-tree", "-r", "-z", "--name-only", id);
+        boolean completed = false;
+
+        try (InputStream input = process.getInputStream()) {
+            TokenReader tokens = new TokenReader(input);
+
+            while (tokens.next()) {
+                result.addFile(new FileName(tokens.decode(0, tokens.length()), getPathDictionary()));
+            }
+
+            completed = true;
+        } finally {
+            if (!completed) {
+                process.destroy();
+            }
+        }
+
+        if (process.waitFor() != 0) {
+            throw new IOException("git ls-tree exited with " + process.exitValue());
+        }
+
+        return result;
+    }
+
+    // errors of git are shown in the console.
+    private Process start(String... arguments) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(GIT_EXECUTABLE, "--git-dir=" + gitDirectory.getPath(),
+                "-c", "core.quotepath=off", "-c", "i18n.logOutputEncoding=UTF-8"));
+        command.addAll(Arrays.asList(arguments));
+
+        return new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    // tokens of a NUL-delimited stream. a token is a range of the read buffer until the next one is read,
+    // and only decoded if it's used.
+    static class TokenReader {
+        private final InputStream input;
+        private byte[] buffer = new byte[1 << 16];
+        private int limit = 0; // end of the read bytes
+        private int position = 0; // start of the next token
+        private int start = 0;
+        private int end = 0;
+
+        TokenReader(InputStream input) {
+            this.input = input;
+        }
+
+        // the last token may not end with NUL.
+        boolean next() throws IOException {
+            int scan = position;
+
+            while (true) {
+                for (; scan < limit; scan++) {
+                    if (buffer[scan] == 0) {
+                        start = position;
+                        end = scan;
+                        position = scan + 1;
+
+                        return true;
+                    }
+                }
+
+                // the token is moved to the front, and the buffer grows if it's full of the token.
+                if (position > 0) {
+                    System.arraycopy(buffer, position, buffer, 0, limit - position);
+                    scan -= position;
+                    limit -= position;
+                    position = 0;
+                }
+
+                if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length << 1);
+                }
+
+                int read = input.read(buffer, limit, buffer.length - limit);
+
+                if (read < 0) {
+                    start = position;
+                    end = limit;
+                    position = limit;
+
+                    return end > start;
+                }
+
+                limit += read;
+            }
+        }
+
+        int length() {
+            return end - start;
+        }
+
+        byte byteAt(int index) {
+            return buffer[start + index];
+        }
+
+        // index of the first byte which is not the given one.
+        int skip(char skipped) {
+            int index = 0;
+
+            while (index < length() && byteAt(index) == skipped) {
+                index++;
+            }
+
+            return index;
+        }
+
+        // index of the byte from the given index, or the length if not found.
+        int indexOf(char found, int from) {
+            int index = from;
+
+            while (index < length() && byteAt(index) != found) {
+                index++;
+            }
+
+            return index;
+        }
+
+        long parseLong(int from, int to) throws IOException {
+            long result = 0;
+
+            for (int i = from; i < to; i++) {
+                if (byteAt(i) < '0' || byteAt(i) > '9') {
+                    throw new IOException("Unexpected output of git log.");
+                }
+
+                result = result * 10 + (byteAt(i) - '0');
+            }
+
+            return result;
+        }
+
+        String decode(int from, int to) {
+            return new String(buffer, start + from, to - from, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -2,33 +2,50 @@ package collect;
 
 import model.FileName;
 import model.Revision;
+import model.RevisionStore;
 import org.apache.commons.io.FileDeleteStrategy;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.TextProgressMonitor;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import utils.Logger;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.net.URL;
-import java.util.Date;
-import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class GitRevisionCollector extends RevisionCollector<GitRevisionCollector> {
     public static final String DEFAULT_BRANCH = "master";
     public static final String DEFAULT_TEMP = "git_temp/";
+    private static final String MIRROR_REF_SPEC = "+refs/heads/*:refs/heads/*";
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long PUT_TIMEOUT_MILLIS = 100; // interval to check the workers while the queue is full
+    private static final String INDEX_DIRECTORY_POSTFIX = ".index";
+    private static final String COMMIT_TIME_INDEX_DIRECTORY = "commit-time-index";
+    private static final String CHANGED_PATH_INDEX_DIRECTORY = "changed-path-index";
 
     private URL uri;
     private String branch;
@@ -36,8 +53,12 @@ public class GitRevisionCollector extends RevisionCollector<GitRevisionCollector
     private File tempDirectory = new File(DEFAULT_TEMP);
     private boolean localFile;
     private boolean preserveTemp = false;
+    private int parallelism = 1;
+    private File cacheDirectory = null; // remote repositories are mirrored and indexes are kept in it, if given.
+    private boolean changedPathIndex = false;
 
     private Revision latestRevision = null;
+    private List<String> heads = Collections.emptyList();
 
     public GitRevisionCollector(URL uri) throws GitAPIException {
         this.uri = uri;
@@ -62,6 +83,10 @@ public class GitRevisionCollector extends RevisionCollector<GitRevisionCollector
         return localFile;
     }
 
+    public String getBranch() {
+        return branch;
+    }
+
     public String[] getBranchList() {
         return branchList.toArray(new String[branchList.size()]);
     }
@@ -74,6 +99,24 @@ public class GitRevisionCollector extends RevisionCollector<GitRevisionCollector
         preserveTemp = value;
     }
 
+    public void setCacheDirectory(File directory) {
+        cacheDirectory = directory;
+    }
+
+    // number of threads diffing the commits. 1 will diff in the walking thread.
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    // keeps the changed paths of the commits in the cache directory, so later runs diff only new commits.
+    public void setChangedPathIndex(boolean value) {
+        changedPathIndex = value;
+    }
+
     public void setBranch(String branch) {
         if (!branchList.contains(branch)) {
             throw new IllegalArgumentException(branch + " branch not exists");
@@ -88,93 +131,321 @@ public class GitRevisionCollector extends RevisionCollector<GitRevisionCollector
     }
 
     @Override
-    public Set<Revision> collect() throws Exception {
-        FileRepository repository = null;
+    public RevisionStore collect() throws Exception {
+        FileRepository repository = getFileRepository();
 
-        repository = getFileRepository();
+        // the repository is closed and the temp clone is deleted on failures too.
+        try {
+            return collect(repository);
+        } finally {
+            repository.close();
 
-        ObjectReader reader = repository.newObjectReader();
+            if (!localFile && !preserveTemp && cacheDirectory == null) {
+                deleteTempDirectory();
+            }
+        }
+    }
+
+    private RevisionStore collect(FileRepository repository) throws Exception {
         Git git = new Git(repository);
 
-        Iterable<RevCommit> commits = git.log().add(repository.resolve("refs/heads/" + branch)).setRevFilter(RevFilter.NO_MERGES).call();
-        TreeSet<Revision> revisions = new TreeSet<>();
+        // the time range is applied by the walk, which starts from the commits given by the index on --to runs.
+        ObjectId head = repository.resolve("refs/heads/" + branch);
+        List<ObjectId> starts = getTo() > 0 ? getStartCommits(repository, head) : Collections.singletonList(head);
+        LogCommand log = git.log()
+                .setRevFilter(AndRevFilter.create(RevFilter.NO_MERGES, new CommitTimeRangeFilter(getFrom(), getTo())));
+
+        for (ObjectId start : starts) {
+            log.add(start);
+        }
+
+        // the history of the processed heads was collected by a previous run.
+        for (ObjectId processed : getProcessedCommits(repository, head)) {
+            log.not(processed);
+        }
+
+        heads = head == null ? Collections.emptyList() : Collections.singletonList(head.getName());
+
+        // the log walks from HEAD if no commit is added.
+        Iterable<RevCommit> commits = starts.isEmpty() ? Collections.emptyList() : log.call();
+        List<DiffTask> tasks = new ArrayList<>();
 
-        long limit = getLimit() > 0 ? getLimit() : Long.MAX_VALUE;
+        // commits are diffed by the workers while walking, and put into the store in the order of the walk.
+        BlockingQueue<DiffTask> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ExecutorService pool = null;
+        List<Future<Void>> workers = new ArrayList<>();
+        AllowedPathTreeFilter pathFilter = new AllowedPathTreeFilter(getPathFilter());
+        ChangedPathIndex index = changedPathIndex ? openChangedPathIndex() : null;
 
-        // commit info are sorted by time desc.
+        // changed files are filtered while diffing, or all paths are diffed and filtered by the index.
+        AllowedPathTreeFilter diffFilter = index == null ? pathFilter : null;
+
+        RevisionStore revisions = new RevisionStore();
         RevCommit latestCommit = null;
-        for (RevCommit commit : commits) {
-            // check limit
-            if (limit < 0) {
-                break;
+
+        // the index is closed on failures too, since it's locked until then.
+        try (ObjectReader reader = repository.newObjectReader(); TreeWalk treeWalk = newTreeWalk(reader, diffFilter)) {
+            if (parallelism > 1) {
+                pool = Executors.newFixedThreadPool(parallelism);
+
+                for (int i = 0; i < parallelism; i++) {
+                    workers.add(pool.submit(() -> diffTasks(repository, diffFilter, queue)));
+                }
+            }
+
+            long limit = getLimit() > 0 ? getLimit() : Long.MAX_VALUE;
+
+            // commit info are sorted by time desc.
+            for (RevCommit commit : commits) {
+                // check limit
+                if (limit < 0) {
+                    break;
+                }
+
+                long commitTime = commit.getCommitTime() * 1000L;
+                Logger.INSTANCE.info(String.format("Commit %s (%s)", commit.getId().getName(), new Date(commitTime)));
+
+                // maybe needs some changes? revfilter on log().filter()?
+                // fixme: can't get initial commit files
+                if (commit.getParentCount() != 1) {
+                    continue;
+                }
+
+                DiffTask task = new DiffTask(commit);
+                task.pathIds = index == null ? null : index.get(commit);
+                tasks.add(task);
+
+                // indexed commits are not diffed again.
+                if (task.pathIds == null && pool == null) {
+                    diff(treeWalk, diffFilter, task);
+                } else if (task.pathIds == null) {
+                    put(queue, task, workers);
+                }
+
+                limit--;
+            }
+
+            if (pool != null) {
+                for (int i = 0; i < parallelism; i++) {
+                    put(queue, DiffTask.END, workers);
+                }
+
+                for (Future<Void> worker : workers) {
+                    getResult(worker);
+                }
+            }
+
+            for (DiffTask task : tasks) {
+                RevCommit commit = task.commit;
+
+                if (index != null) {
+                    if (task.pathIds == null) {
+                        task.pathIds = index.put(commit, task.changedPaths);
+                    }
+
+                    task.changedFiles = index.getChangedFiles(task.pathIds);
+                }
+
+                // only use commits with changes files
+                if (task.changedFiles.size() > 0) {
+                    // check latest Revision
+
+                    if (latestCommit == null || commit.getCommitTime() > latestCommit.getCommitTime()) {
+                        latestCommit = commit;
+                    }
+
+                    long commitTime = commit.getCommitTime() * 1000L;
+                    revisions.add(commit.getId().getName(), commitTime, commit.getAuthorIdent().getEmailAddress(),
+                            commit.getFullMessage(), task.changedFiles);
+                }
+            }
+        } finally {
+            // workers left by a failure are interrupted while waiting for tasks.
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+
+            if (index != null) {
+                index.close();
             }
+        }
+
+        latestRevision = latestCommit == null ? null : getAllFiles(repository, latestCommit);
+        git.close();
+
+        return revisions;
+    }
+
+    // puts the task for the workers. the walk doesn't wait for the workers after one of them fails,
+    // and is aborted with the failure.
+    private static void put(BlockingQueue<DiffTask> queue, DiffTask task, List<Future<Void>> workers) throws Exception {
+        do {
+            for (Future<Void> worker : workers) {
+                if (worker.isDone()) {
+                    getResult(worker);
+                }
+            }
+        } while (!queue.offer(task, PUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private static void getResult(Future<Void> worker) throws Exception {
+        try {
+            worker.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    // diffs the tasks of the queue with its own reader and tree walk, until the end task is taken.
+    // a failure ends the worker, and the walk stops putting tasks when it sees the failure.
+    private Void diffTasks(FileRepository repository, AllowedPathTreeFilter pathFilter,
+                           BlockingQueue<DiffTask> queue) throws Exception {
+        try (ObjectReader reader = repository.newObjectReader(); TreeWalk treeWalk = newTreeWalk(reader, pathFilter)) {
+            for (DiffTask task = queue.take(); task != DiffTask.END; task = queue.take()) {
+                diff(treeWalk, pathFilter, task);
+            }
+        }
+
+        return null;
+    }
+
+    // only changed paths passing the filter are walked. all changed paths are walked without the filter.
+    private static TreeWalk newTreeWalk(ObjectReader reader, AllowedPathTreeFilter pathFilter) {
+        TreeWalk treeWalk = new TreeWalk(reader);
+        treeWalk.setRecursive(true);
+        treeWalk.setFilter(pathFilter == null ? TreeFilter.ANY_DIFF : AndTreeFilter.create(TreeFilter.ANY_DIFF, pathFilter));
+
+        return treeWalk;
+    }
+
+    // sets the changed files of the task, or all changed paths of it for the index if the filter is null.
+    private void diff(TreeWalk treeWalk, AllowedPathTreeFilter pathFilter, DiffTask task) throws IOException {
+        if (pathFilter == null) {
+            task.changedPaths = getChangedPaths(treeWalk, task);
+        } else {
+            task.changedFiles = getChangedFiles(treeWalk, pathFilter, task);
+        }
+    }
+
+    // changed paths of the commit like the changed files without the filter. /dev/null is reported once.
+    private static List<String> getChangedPaths(TreeWalk treeWalk, DiffTask task) throws IOException {
+        List<String> changedPaths = new ArrayList<>();
+        boolean removed = false;
+
+        treeWalk.reset(task.oldTree, task.newTree);
+
+        while (treeWalk.next()) {
+            int oldMode = treeWalk.getRawMode(0);
+            int newMode = treeWalk.getRawMode(1);
 
-            // check time range
-            long commitTime = commit.getCommitTime() * 1000L;
-            if (getFrom() > 0 && commitTime < getFrom()) {
-                break;
+            if (!removed && AllowedPathTreeFilter.isRemoved(oldMode, newMode)) {
+                removed = true;
+                changedPaths.add(DiffEntry.DEV_NULL);
             }
 
-            if (getTo() > 0 && commitTime > getTo()) {
-                continue;
+            if (newMode != 0) {
+                changedPaths.add(treeWalk.getPathString());
             }
+        }
+
+        return changedPaths;
+    }
+
+    // changed files of the commit, named like the new paths of the diff entries.
+    // deleted files and files changing their types are reported as /dev/null, like the diff command does.
+    private TreeSet<FileName> getChangedFiles(TreeWalk treeWalk, AllowedPathTreeFilter pathFilter,
+                                              DiffTask task) throws IOException {
+        TreeSet<FileName> changedFiles = new TreeSet<>();
 
-            Logger.INSTANCE.info(String.format("Commit %s (%s)", commit.getId().getName(), new Date(commitTime)));
+        treeWalk.reset(task.oldTree, task.newTree);
 
-            // maybe needs some changes? revfilter on log().filter()?
-            // fixme: can't get initial commit files
-            if (commit.getParentCount() != 1) {
-                continue;
+        while (treeWalk.next()) {
+            int oldMode = treeWalk.getRawMode(0);
+            int newMode = treeWalk.getRawMode(1);
+
+            if (AllowedPathTreeFilter.isRemoved(oldMode, newMode) && pathFilter.isAllowed(DiffEntry.DEV_NULL)) {
+                changedFiles.add(new FileName(DiffEntry.DEV_NULL, getPathDictionary()));
             }
 
-            // get changed files
-            RevCommit parent = commit.getParent(0);
+            // removed files may be walked only for /dev/null.
+            if (newMode != 0 && pathFilter.isAllowed(treeWalk.getPathString())) {
+                changedFiles.add(new FileName(treeWalk.getPathString(), getPathDictionary()));
+            }
+        }
+
+        return changedFiles;
+    }
+
+    // commits to start the walk from, resolved by the commit time index of the branch in the cache directory.
+    // the walk starts from the head without the index.
+    private List<ObjectId> getStartCommits(FileRepository repository, ObjectId head) throws IOException {
+        File directory = getIndexDirectory(COMMIT_TIME_INDEX_DIRECTORY);
 
-            CanonicalTreeParser oldTree = new CanonicalTreeParser();
-            oldTree.reset(reader, parent.getTree().getId());
+        if (directory == null) {
+            return Collections.singletonList(head);
+        }
 
-            CanonicalTreeParser newTree = new CanonicalTreeParser();
-            newTree.reset(reader, commit.getTree().getId());
+        File file = new File(directory,
+                String.format("%s_%08x", branch.replaceAll("[^a-zA-Z0-9]+", "_"), branch.hashCode()));
 
-            Revision newRevision = new Revision(commit.getId().getName(), commitTime, commit.getName(), commit.getFullMessage());
-            List<DiffEntry> diffs = git.diff()
-                    .setOldTree(oldTree)
-                    .setNewTree(newTree)
-                    .call();
+        try (RevWalk walk = new RevWalk(repository)) {
+            return new CommitTimeIndex(file).getStartCommits(walk, head, getTo());
+        } catch (IOException e) {
+            Logger.INSTANCE.info("The commit time index can't be used. (" + e.getMessage() + ")");
+            return Collections.singletonList(head);
+        }
+    }
 
-            diffs.stream()
-//                    .filter(x -> x.getChangeType() != DiffEntry.ChangeType.DELETE)
-                    .map(DiffEntry::getNewPath)
-                    .map(FileName::new)
-                    .filter(x -> getAllowedExtensions().contains(x.getExtension().toLowerCase()))
-                    .filter(x -> getIgnoreStrings().stream().allMatch(y -> !x.toString().toLowerCase().contains(y)))
-                    .forEach(newRevision::addFile);
+    // commits of the processed heads, or none if any of them is not in the history of the head.
+    private List<ObjectId> getProcessedCommits(FileRepository repository, ObjectId head) throws IOException {
+        List<ObjectId> commits = new ArrayList<>();
 
-            // only use commits with changes files
-            if (newRevision.getChangedFiles().size() > 0) {
-                // check latest Revision
+        try (RevWalk walk = new RevWalk(repository)) {
+            for (String id : getProcessedHeads()) {
+                ObjectId commit = ObjectId.isId(id) ? ObjectId.fromString(id) : null;
 
-                if (latestCommit == null || commit.getCommitTime() > latestCommit.getCommitTime()) {
-                    latestCommit = commit;
+                if (head == null || commit == null || !repository.hasObject(commit)
+                        || !walk.isMergedInto(walk.parseCommit(commit), walk.parseCommit(head))) {
+                    Logger.INSTANCE.info("The processed head " + id + " is not in the history of " + branch + ".");
+                    setProcessedHeads(Collections.emptyList());
+
+                    return Collections.emptyList();
                 }
 
-                revisions.add(newRevision);
+                commits.add(commit);
             }
+        }
 
-            limit--;
+        return commits;
+    }
+
+    // the changed path index in the cache directory, or null if it can't be kept. every commit is diffed without it.
+    private ChangedPathIndex openChangedPathIndex() throws IOException {
+        if (cacheDirectory == null) {
+            Logger.INSTANCE.info("The changed path index is kept only in a cache directory. It's not used.");
+            return null;
         }
 
-        latestRevision = getAllFiles(repository, latestCommit);
+        File directory = getIndexDirectory(CHANGED_PATH_INDEX_DIRECTORY);
 
-        git.close();
-        reader.close();
-        repository.close();
+        return directory == null ? null : new ChangedPathIndex(directory, getPathFilter(), getPathDictionary());
+    }
 
-        if (!localFile && !preserveTemp) {
-            deleteTempDirectory();
+    // directory of an index of the repository in the cache directory, or null if it can't be kept.
+    // indexes are not kept in the git directory, which may be read-only or a temp clone deleted after the run.
+    private File getIndexDirectory(String name) {
+        if (cacheDirectory == null) {
+            return null;
         }
 
-        return revisions;
+        File directory = new File(new File(cacheDirectory, getMirrorName() + INDEX_DIRECTORY_POSTFIX), name);
+
+        if ((!directory.isDirectory() && !directory.mkdirs()) || !directory.canWrite()) {
+            Logger.INSTANCE.info(String.format("%s is not writable. The index is not used.", directory.getPath()));
+            return null;
+        }
+
+        return directory;
     }
 
     private FileRepository getFileRepository() throws GitAPIException, IOException {
@@ -182,6 +453,10 @@ public class GitRevisionCollector extends RevisionCollector<GitRevisionCollector
             return new FileRepository(uri.getPath());
         }
 
+        if (cacheDirectory != null) {
+            return getMirrorRepository();
+        }
+
         if (tempDirectory.exists()) {
             try {
                 FileDeleteStrategy.FORCE.delete(tempDirectory);
@@ -194,27 +469,92 @@ public class GitRevisionCollector extends RevisionCollector<GitRevisionCollector
         Git.cloneRepository()
                 .setBare(true)
                 .setURI(uri.toExternalForm())
-                .setProgressMonitor(new TextProgressMonitor(new Writer() {
-                    @Override
-                    public void write(char[] cbuf, int off, int len) throws IOException {
-                        Logger.INSTANCE.info(String.copyValueOf(cbuf));
-                    }
+                .setProgressMonitor(newProgressMonitor())
+                .setGitDir(tempDirectory)
+                .setBranch(branch)
+                .call();
 
-                    @Override
-                    public void flush() throws IOException {
+        return new FileRepository(tempDirectory);
+    }
 
-                    }
+    // a bare mirror of all branches in the cache directory, named after the url.
+    // it's cloned by the first run, and later runs only fetch new commits into it.
+    // the lock file keeps concurrent runs from cloning or fetching the same mirror at once.
+    private FileRepository getMirrorRepository() throws GitAPIException, IOException {
+        String name = getMirrorName();
+        File mirror = new File(cacheDirectory, name + ".git");
 
-                    @Override
-                    public void close() throws IOException {
+        if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            throw new IOException("Can't create the git cache directory.");
+        }
+
+        try (FileChannel channel = FileChannel.open(new File(cacheDirectory, name + ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
 
+            try {
+                if (mirror.exists()) {
+                    Logger.INSTANCE.info("Fetching new commits into the cached mirror...");
+
+                    try (Git git = Git.open(mirror)) {
+                        git.fetch()
+                                .setRemote(uri.toExternalForm())
+                                .setRefSpecs(new RefSpec(MIRROR_REF_SPEC))
+                                .setRemoveDeletedRefs(true)
+                                .setProgressMonitor(newProgressMonitor())
+                                .call();
                     }
-                }))
-                .setGitDir(tempDirectory)
-                .setBranch(branch)
-                .call();
+                } else {
+                    // cloned next to the mirror and moved at once, so a failed clone is not taken as a mirror.
+                    File temp = new File(cacheDirectory, name + ".git.tmp");
 
-        return new FileRepository(tempDirectory);
+                    if (temp.exists()) {
+                        FileDeleteStrategy.FORCE.delete(temp);
+                    }
+
+                    Logger.INSTANCE.info("Getting all commits into the cached mirror...");
+                    Git.cloneRepository()
+                            .setBare(true)
+                            .setCloneAllBranches(true)
+                            .setURI(uri.toExternalForm())
+                            .setProgressMonitor(newProgressMonitor())
+                            .setGitDir(temp)
+                            .call()
+                            .close();
+
+                    Files.move(temp.toPath(), mirror.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+
+        return new FileRepository(mirror);
+    }
+
+    private String getMirrorName() {
+        String url = uri.toExternalForm();
+
+        return String.format("%s_%08x", url.replaceAll("[^a-zA-Z0-9]+", "_"), url.hashCode());
+    }
+
+    private static ProgressMonitor newProgressMonitor() {
+        return new TextProgressMonitor(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                Logger.INSTANCE.info(String.copyValueOf(cbuf));
+            }
+
+            @Override
+            public void flush() throws IOException {
+
+            }
+
+            @Override
+            public void close() throws IOException {
+
+            }
+        });
     }
 
     @Override
@@ -222,22 +562,51 @@ public class GitRevisionCollector extends RevisionCollector<GitRevisionCollector
         return latestRevision;
     }
 
-    private Revision getAllFiles(FileRepository repository, RevCommit commit) throws IOException {
-        TreeWalk treeWalk = new TreeWalk(repository);
-        treeWalk.addTree(commit.getTree());
-        treeWalk.setRecursive(true);
+    @Override
+    public List<String> getHeads() {
+        return heads;
+    }
 
+    // a commit to diff with its parent. the changed files or paths are set by a worker,
+    // unless the paths are found in the index.
+    private static class DiffTask {
+        private static final DiffTask END = new DiffTask();
+
+        private final RevCommit commit;
+        private final ObjectId oldTree;
+        private final ObjectId newTree;
+        private TreeSet<FileName> changedFiles;
+        private List<String> changedPaths;
+        private int[] pathIds; // numbers of the changed paths in the index
+
+        private DiffTask() {
+            this.commit = null;
+            this.oldTree = null;
+            this.newTree = null;
+        }
+
+        DiffTask(RevCommit commit) {
+            this.commit = commit;
+            this.oldTree = commit.getParent(0).getTree().getId();
+            this.newTree = commit.getTree().getId();
+        }
+    }
+
+    private Revision getAllFiles(FileRepository repository, RevCommit commit) throws IOException {
         Revision result = new Revision(commit.getId().toString(), commit.getCommitTime() * 1000, "", "");
 
-        while (treeWalk.next()) {
-            if (!treeWalk.isSubtree()) {
-                // TODO: 2016-08-04 extension filter?
-                result.addFile(new FileName(treeWalk.getPathString()));
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+
+            while (treeWalk.next()) {
+                if (!treeWalk.isSubtree()) {
+                    // TODO: 2016-08-04 extension filter?
+                    result.addFile(new FileName(treeWalk.getPathString(), getPathDictionary()));
+                }
             }
         }
 
-        treeWalk.close();
-
         return result;
     }
 
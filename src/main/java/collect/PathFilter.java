@@ -0,0 +1,243 @@
+package collect;
+
+import java.util.*;
+
+// allowed extensions and ignore strings of changed paths, compiled for checking a path in a single pass.
+// ignore strings are found by an aho-corasick automaton, and extensions are looked up in a hash table
+// without taking substrings. cases are ignored like lowercased paths of FileName.
+// paths with non-ascii characters are checked with lowercased strings, since their lower cases may differ in length.
+public class PathFilter {
+    private static final int ALPHABET = 128; // ascii
+
+    private final Set<String> extensions; // lower cases
+    private final Set<String> ignoreStrings; // lower cases
+    private final boolean ignoreAll; // an empty ignore string is contained in every path
+
+    private final int[] transitions; // next state of transitions[state * ALPHABET + c]
+    private final boolean[] matched; // whether an ignore string ends at the state
+    private final boolean nonAsciiIgnoreString; // such strings are found only by the slow path
+
+    private final String[] extensionTable; // open addressing by the hash code of the extension
+    private final int extensionMask;
+
+    public PathFilter(Set<String> extensions, Set<String> ignoreStrings) {
+        this.extensions = new HashSet<>();
+        this.ignoreStrings = new HashSet<>();
+
+        for (String extension : extensions) {
+            this.extensions.add(extension.toLowerCase());
+        }
+
+        for (String ignoreString : ignoreStrings) {
+            this.ignoreStrings.add(ignoreString.toLowerCase());
+        }
+
+        this.ignoreAll = this.ignoreStrings.contains("");
+
+        // trie of the ascii ignore strings, with -1 for missing transitions.
+        List<int[]> trie = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        boolean nonAscii = false;
+
+        trie.add(newState());
+        ends.add(false);
+
+        for (String ignoreString : this.ignoreStrings) {
+            if (!isAscii(ignoreString)) {
+                nonAscii = true;
+                continue;
+            }
+
+            int state = 0;
+
+            for (int i = 0; i < ignoreString.length(); i++) {
+                char c = ignoreString.charAt(i);
+
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newState());
+                    ends.add(false);
+                }
+
+                state = trie.get(state)[c];
+            }
+
+            ends.set(state, true);
+        }
+
+        this.nonAsciiIgnoreString = nonAscii;
+
+        // missing transitions follow the failure links, so the automaton never goes back on the path.
+        int stateCount = trie.size();
+        int[] failures = new int[stateCount];
+        this.transitions = new int[stateCount * ALPHABET];
+        this.matched = new boolean[stateCount];
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matched[state] = ends.get(state) || (state != 0 && matched[failures[state]]);
+
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = trie.get(state)[c];
+                int fallback = state == 0 ? 0 : transitions[failures[state] * ALPHABET + c];
+
+                if (child < 0) {
+                    transitions[state * ALPHABET + c] = fallback;
+                } else {
+                    failures[child] = fallback;
+                    transitions[state * ALPHABET + c] = child;
+                    queue.add(child);
+                }
+            }
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max(1, this.extensions.size()) * 4 - 1) << 1;
+        this.extensionTable = new String[tableSize];
+        this.extensionMask = tableSize - 1;
+
+        for (String extension : this.extensions) {
+            int slot = extension.hashCode() & extensionMask;
+
+            while (extensionTable[slot] != null) {
+                slot = (slot + 1) & extensionMask;
+            }
+
+            extensionTable[slot] = extension;
+        }
+    }
+
+    // whether the path has an allowed extension and contains none of the ignore strings.
+    public boolean isAllowed(String path) {
+        if (ignoreAll) {
+            return false;
+        }
+
+        int state = 0;
+        int leafIndex = 0;
+        int extensionIndex = -1;
+
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+
+            if (c >= ALPHABET) {
+                return isAllowedSlowly(path);
+            }
+
+            state = transitions[state * ALPHABET + toLowerCase(c)];
+
+            if (matched[state]) {
+                return false;
+            }
+
+            if (c == '/') {
+                leafIndex = i + 1;
+            } else if (c == '.') {
+                extensionIndex = i + 1;
+            }
+        }
+
+        if (nonAsciiIgnoreString) {
+            return isAllowedSlowly(path);
+        }
+
+        return extensionIndex < leafIndex ? containsExtension(path, path.length(), path.length())
+                : containsExtension(path, extensionIndex, path.length());
+    }
+
+    // whether the path contains any of the ignore strings.
+    public boolean containsIgnoreString(String path) {
+        if (ignoreAll) {
+            return true;
+        }
+
+        int state = 0;
+
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+
+            if (c >= ALPHABET) {
+                return containsIgnoreStringSlowly(path.toLowerCase());
+            }
+
+            state = transitions[state * ALPHABET + toLowerCase(c)];
+
+            if (matched[state]) {
+                return true;
+            }
+        }
+
+        return nonAsciiIgnoreString && containsIgnoreStringSlowly(path.toLowerCase());
+    }
+
+    private boolean isAllowedSlowly(String path) {
+        String lowerPath = path.toLowerCase();
+        int leafIndex = lowerPath.lastIndexOf('/') + 1;
+        int extensionIndex = lowerPath.lastIndexOf('.');
+        String extension = extensionIndex < leafIndex ? "" : lowerPath.substring(extensionIndex + 1);
+
+        return extensions.contains(extension) && !containsIgnoreStringSlowly(lowerPath);
+    }
+
+    private boolean containsIgnoreStringSlowly(String lowerPath) {
+        for (String ignoreString : ignoreStrings) {
+            if (lowerPath.contains(ignoreString)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // whether the lower case of path[from, to), which is ascii, is an allowed extension.
+    private boolean containsExtension(String path, int from, int to) {
+        int hash = 0;
+
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + toLowerCase(path.charAt(i));
+        }
+
+        for (int slot = hash & extensionMask; extensionTable[slot] != null; slot = (slot + 1) & extensionMask) {
+            String extension = extensionTable[slot];
+
+            if (extension.length() == to - from && equalsIgnoreCase(extension, path, from)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean equalsIgnoreCase(String extension, String path, int from) {
+        for (int i = 0; i < extension.length(); i++) {
+            if (extension.charAt(i) != toLowerCase(path.charAt(from + i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= ALPHABET) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+
+        return state;
+    }
+}
@@ -1,10 +1,15 @@
 package collect;
 
 import model.FileName;
+import model.PathDictionary;
 import model.Revision;
+import model.RevisionStore;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -17,6 +22,9 @@ public abstract class RevisionCollector<T extends RevisionCollector<T>> {
     // only lower cases are allowed
     private Set<String> extensions;
     private Set<String> ignoreStrings;
+    private PathFilter pathFilter; // compiled from the extensions and the ignore strings when needed
+    private PathDictionary pathDictionary = new PathDictionary(); // shared by the file names of the run
+    private Set<String> processedHeads = Collections.emptySet(); // heads of the history collected by a previous run
 
     public T setLimit(int limit) {
         if (limit < 0) {
@@ -31,6 +39,7 @@ public abstract class RevisionCollector<T extends RevisionCollector<T>> {
     public T setAllowedExtensions(String[] extensions) {
         this.extensions = Arrays.asList(extensions).stream().map(String::toLowerCase).collect(Collectors.toSet());
         this.extensions = Collections.unmodifiableSet(this.extensions);
+        this.pathFilter = null;
 
         return getThis();
     }
@@ -38,6 +47,7 @@ public abstract class RevisionCollector<T extends RevisionCollector<T>> {
     public T setIgnoreStrings(String[] ignoreStrings) {
         this.ignoreStrings = Arrays.asList(ignoreStrings).stream().map(String::toLowerCase).collect(Collectors.toSet());
         this.ignoreStrings = Collections.unmodifiableSet(this.ignoreStrings);
+        this.pathFilter = null;
 
         return getThis();
     }
@@ -54,6 +64,21 @@ public abstract class RevisionCollector<T extends RevisionCollector<T>> {
         return getThis();
     }
 
+    public T setPathDictionary(PathDictionary pathDictionary) {
+        this.pathDictionary = pathDictionary;
+
+        return getThis();
+    }
+
+    // revisions in the history of the processed heads are not collected.
+    // if any of them is not in the history of the collected head, every revision is collected,
+    // and the processed heads are cleared.
+    public T setProcessedHeads(Collection<String> processedHeads) {
+        this.processedHeads = Collections.unmodifiableSet(new LinkedHashSet<>(processedHeads));
+
+        return getThis();
+    }
+
     public long getFrom() {
         return from;
     }
@@ -73,7 +98,29 @@ public abstract class RevisionCollector<T extends RevisionCollector<T>> {
         return ignoreStrings;
     }
 
+    public PathDictionary getPathDictionary() {
+        return pathDictionary;
+    }
+
+    public Set<String> getProcessedHeads() {
+        return processedHeads;
+    }
+
+    // unset extensions or ignore strings are treated as empty.
+    public PathFilter getPathFilter() {
+        if (pathFilter == null) {
+            pathFilter = new PathFilter(
+                    extensions == null ? Collections.emptySet() : extensions,
+                    ignoreStrings == null ? Collections.emptySet() : ignoreStrings);
+        }
+
+        return pathFilter;
+    }
+
     public abstract T getThis();
-    public abstract Set<Revision> collect() throws Exception;
+    public abstract RevisionStore collect() throws Exception;
     public abstract Revision getLatestRevision() throws Exception;
+
+    // heads of the collected history, which are the processed heads of the next run. empty before collect().
+    public abstract List<String> getHeads();
 }
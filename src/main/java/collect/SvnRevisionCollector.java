@@ -2,6 +2,7 @@ package collect;
 
 import model.FileName;
 import model.Revision;
+import model.RevisionStore;
 import org.tmatesoft.svn.core.*;
 import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
@@ -12,11 +13,13 @@ import utils.Logger;
 
 import java.net.URL;
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class SvnRevisionCollector extends RevisionCollector<SvnRevisionCollector> {
     private SVNURL url;
     private long latestRevisionId = 0;
     private long latestRevisionTime = 0;
+    private List<String> heads = Collections.emptyList();
 
     public SvnRevisionCollector(URL url) throws SVNException {
         this.url = SVNURL.parseURIEncoded(url.toExternalForm());
@@ -29,7 +32,7 @@ public class SvnRevisionCollector extends RevisionCollector<SvnRevisionCollector
     }
 
     @Override
-    public Set<Revision> collect() throws SVNException {
+    public RevisionStore collect() throws SVNException {
         // get svnkit instances
         SVNClientManager svnClientManager = SVNClientManager.newInstance();
         SVNLogClient logClient = svnClientManager.getLogClient();
@@ -42,12 +45,55 @@ public class SvnRevisionCollector extends RevisionCollector<SvnRevisionCollector
         SVNRevision from = getFrom() >= 0 ? SVNRevision.create(new Date(getFrom())) : null;
         SVNRevision to = getTo() >= 0 ? SVNRevision.create(new Date(getTo())) : null;
 
+        // the head is the latest revision number, and revisions after the processed head are new.
+        SVNRepository repository = SVNRepositoryFactory.create(url);
+        long head = repository.getLatestRevision();
+        long processed = getProcessedRevision(head);
+        heads = Collections.singletonList(String.valueOf(head));
+
+        if (processed >= 0) {
+            long end = getTo() >= 0 ? repository.getDatedRevision(new Date(getTo())) : head;
+
+            // the log would be reversed if the range is empty.
+            if (end <= processed) {
+                return revisionLogHandler.getRevisions();
+            }
+
+            from = SVNRevision.create(processed + 1);
+            to = SVNRevision.create(end);
+        }
+
         logClient.doLog(url, new String[] {}, null, from, to, true, true, getLimit(), revisionLogHandler);
 
         // retrieve revision data from collector
         return revisionLogHandler.getRevisions();
     }
 
+    @Override
+    public List<String> getHeads() {
+        return heads;
+    }
+
+    // the latest of the processed heads, or -1 if any of them is not a revision of the repository.
+    private long getProcessedRevision(long head) {
+        long processed = -1;
+
+        for (String id : getProcessedHeads()) {
+            long revision = id.matches("[0-9]+") ? Long.parseLong(id) : Long.MAX_VALUE;
+
+            if (revision > head) {
+                Logger.INSTANCE.info("The processed head " + id + " is not a revision of " + url + ".");
+                setProcessedHeads(Collections.emptyList());
+
+                return -1;
+            }
+
+            processed = Math.max(processed, revision);
+        }
+
+        return processed;
+    }
+
     @Override
     public Revision getLatestRevision() throws SVNException {
 
@@ -61,13 +107,13 @@ public class SvnRevisionCollector extends RevisionCollector<SvnRevisionCollector
     }
 
     private class RevisionLogHandler implements ISVNLogEntryHandler {
-        private Set<Revision> revisions;
+        private RevisionStore revisions;
 
         public RevisionLogHandler() {
-            revisions = new TreeSet<>();
+            revisions = new RevisionStore();
         }
 
-        public Set<Revision> getRevisions() {
+        public RevisionStore getRevisions() {
             return revisions;
         }
 
@@ -80,22 +126,21 @@ public class SvnRevisionCollector extends RevisionCollector<SvnRevisionCollector
 
             long revision = logEntry.getRevision();
             long time = logEntry.getDate().getTime();
-            Revision newRevision = new Revision(String.valueOf(revision), time, logEntry.getAuthor(), logEntry.getMessage());
-
             // extract files
-            changedPaths.keySet().stream()
-                    .map(FileName::new)
-                    .filter(x -> getAllowedExtensions().contains(x.getExtension()))
-                    .filter(x -> getIgnoreStrings().stream().allMatch(y -> !x.toString().toLowerCase().contains(y)))
-                    .forEach(newRevision::addFile);
-
-            if (newRevision.getChangedFiles().size() > 0) {
-                if (newRevision.getTime() > latestRevisionTime) {
-                    latestRevisionTime = newRevision.getTime();
-                    latestRevisionId = Long.parseLong(newRevision.getId());
+            // paths are filtered before they are interned in the path dictionary.
+            PathFilter pathFilter = getPathFilter();
+            TreeSet<FileName> changedFiles = changedPaths.keySet().stream()
+                    .filter(pathFilter::isAllowed)
+                    .map(path -> new FileName(path, getPathDictionary()))
+                    .collect(Collectors.toCollection(TreeSet::new));
+
+            if (changedFiles.size() > 0) {
+                if (time > latestRevisionTime) {
+                    latestRevisionTime = time;
+                    latestRevisionId = revision;
                 }
 
-                revisions.add(newRevision);
+                revisions.add(String.valueOf(revision), time, logEntry.getAuthor(), logEntry.getMessage(), changedFiles);
             }
 
         }
@@ -114,7 +159,7 @@ public class SvnRevisionCollector extends RevisionCollector<SvnRevisionCollector
 
             if (dirEntry.getKind().equals(SVNNodeKind.FILE)) {
                 // TODO: 2016-08-12 extension filter
-                latestRevision.addFile(new FileName(dirEntry.getRelativePath()));
+                latestRevision.addFile(new FileName(dirEntry.getRelativePath(), getPathDictionary()));
             }
         }
 
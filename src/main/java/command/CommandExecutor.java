@@ -6,17 +6,17 @@ import export.FileRelationExporter;
 import extract.FileRelationExtractor;
 import merge.RevisionMerger;
 import model.AccumulatedEntity;
+import model.FileDictionary;
 import model.FileName;
+import model.PathDictionary;
 import model.Revision;
 import model.RevisionGroup;
+import model.RevisionStore;
 import utils.Logger;
 
 import java.io.File;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.*;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 public class CommandExecutor {
     public void run(String... args) throws Exception {
@@ -57,78 +57,286 @@ public class CommandExecutor {
         // initialize starting time
         long startTime = System.currentTimeMillis();
 
-        // set usable file name
-        File file = options.getExportFile();
+        // set usable file name. files of the sweep are named after each window size.
+        File file = options.getSweepWindowSizes().isEmpty() ? options.getExportFile() : null;
+
+        // file names of the run share the directories of one dictionary, which is dropped after the run.
+        PathDictionary pathDictionary = new PathDictionary();
+
+        // restore the previous state of the incremental mode
+        IncrementalState state = null;
+        FileRelationExtractor incrementalExtractor = null;
+
+        if (!options.getSweepWindowSizes().isEmpty()
+                && (options.isIncremental() || options.getMergeMethodType() == CommandOptions.MergeMethod.NoMerge)) {
+            throw new IllegalArgumentException(
+                    "The window sweep can't be used with the incremental mode or without merging.");
+        }
+
+        if (options.isIncremental()) {
+            if (options.isApproximate()) {
+                throw new IllegalArgumentException("The incremental mode can't be used with the approximate mode.");
+            }
+
+            if (options.getMergeMethodType() == CommandOptions.MergeMethod.Ticket) {
+                throw new IllegalArgumentException("The incremental mode can't be used with the Ticket merge method, " +
+                        "since a ticket of any previous group may appear again.");
+            }
+
+            Logger.INSTANCE.info("Reading the previous state...");
+            state = new IncrementalState(options);
+            incrementalExtractor = generateStreamingExtractor(options);
+
+            if (!state.read(options.getStateFile(), incrementalExtractor, pathDictionary)) {
+                Logger.INSTANCE.info("No state of the same options. All revisions will be extracted.");
+                state = new IncrementalState(options);
+                incrementalExtractor = generateStreamingExtractor(options);
+            }
+        }
 
         // collect revision data
         Logger.INSTANCE.info("Collecting revision data...");
-        RevisionCollector collector = options.generateRevisionCollector()
+        RevisionCollector collector = generateRevisionCollector(options, pathDictionary, state);
+        RevisionStore revisions = collector.collect();
+
+        // the saved groups are counted from revisions older than the new ones, so the state can't be used
+        // if its heads are not in the history anymore, or older revisions are merged, like commits of a branch.
+        if (state != null && !state.getHeads().isEmpty() && (collector.getProcessedHeads().isEmpty()
+                || (revisions.size() > 0 && revisions.getEarliestTime() <= state.getLastTime()))) {
+            Logger.INSTANCE.info("New revisions are not newer than the saved state. All revisions will be extracted.");
+            revisions.close();
+            state = new IncrementalState(options);
+            incrementalExtractor = generateStreamingExtractor(options);
+            collector = generateRevisionCollector(options, pathDictionary, state);
+            revisions = collector.collect();
+        }
+
+        Revision latestRevision = collector.getLatestRevision(); // todo: maybe a result should use a separated class.
+
+        // the revisions of the open tail are merged again with the new revisions.
+        long lastTime = -1;
+
+        if (state != null) {
+            revisions.addAll(state.getTailRevisions());
+            lastTime = Math.max(state.getLastTime(), revisions.getLatestTime());
+            state.setHeads(collector.getHeads());
+
+            if (latestRevision == null) {
+                latestRevision = state.getLatestRevision();
+            }
+        }
+
+        if (options.getSweepWindowSizes().isEmpty()) {
+            mergeAndExtract(options, options.getSlidingWindowSize(), file, revisions, latestRevision,
+                    state, incrementalExtractor, lastTime, true);
+        } else {
+            // every window size of the sweep shares the collected revisions and their time order,
+            // and is merged and extracted in its own pass, since the groups differ by the window size.
+            // its result is written to its own file, and the options are not changed.
+            for (int windowSize : options.getSweepWindowSizes()) {
+                Logger.INSTANCE.info(String.format("Sweeping window size %d...", windowSize));
+                File windowFile = options.getWindowExportFile(windowSize);
+                mergeAndExtract(options, windowSize, windowFile, revisions, latestRevision, null, null, -1, false);
+                Logger.INSTANCE.info(String.format("%s created.", windowFile.getAbsolutePath()));
+            }
+        }
+
+        revisions.close();
+
+        // print information
+        long endTime = System.currentTimeMillis();
+
+        Logger.INSTANCE.info(String.format("Done. (%dms elapsed)", endTime - startTime));
+
+        if (file != null) {
+            Logger.INSTANCE.info(String.format("%s created.", file.getAbsolutePath()));
+        }
+    }
+
+    // the collector of the options. revisions in the history of the saved heads are not collected again,
+    // and the limit is applied only to the first run of the incremental mode.
+    private RevisionCollector generateRevisionCollector(CommandOptions options, PathDictionary pathDictionary,
+                                                        IncrementalState state) {
+        boolean resumed = state != null && !state.getHeads().isEmpty();
+
+        return options.generateRevisionCollector()
                 .setFrom(options.getRevisionFrom())
                 .setTo(options.getRevisionTo())
-                .setLimit(options.getLimit())
+                .setLimit(resumed ? 0 : options.getLimit())
+                .setProcessedHeads(resumed ? state.getHeads() : Collections.<String>emptyList())
+                .setPathDictionary(pathDictionary)
                 .setAllowedExtensions(options.getExtensions().toArray(new String[options.getExtensions().size()]))
                 .setIgnoreStrings(options.getIgnoreStrings().toArray(new String[options.getIgnoreStrings().size()]));
-        Set<Revision> revisions = collector.collect();
-        Revision latestRevision = collector.getLatestRevision(); // todo: maybe a result should use a separated class.
+    }
 
+    // merges the revisions with the options and the window size, and exports the groups and the relations of them
+    // to the file.
+    // the state is given only in the incremental mode, with the extractor restored from the state.
+    // the streaming mode releases the revisions behind the groups if they're not merged again.
+    private void mergeAndExtract(CommandOptions options, int windowSize, File file,
+                                 RevisionStore revisions, Revision latestRevision,
+                                 IncrementalState state, FileRelationExtractor incrementalExtractor,
+                                 long lastTime, boolean releasing) throws Exception {
         // merge revision data
         Logger.INSTANCE.info("Merging revision data into groups...");
-        RevisionMerger merger = options.generateMerger();
-        merger.setRevisions(revisions);
-        Set<RevisionGroup> groups = merger.merge();
-
-        // remove groups containing single file if the option is set.
-        if (options.isIgnoreSingleFileGroup()) {
-            Logger.INSTANCE.info("Removing single file groups...");
-            removeSingleFileGroup(groups);
-        }
+        RevisionMerger merger = options.generateMerger(windowSize);
+        merger.setRevisions(revisions); // the groups refer to the store, which is closed after the export.
+
+        FileRelationExporter exporter;
+        FileRelationExtractor extractor;
+        TreeMap<FileName, AccumulatedEntity> accumulatedEntities;
+
+        if (state != null) {
+            // groups containing the latest revision may be extended by the revisions of the next run,
+            // so they are counted only after the state is saved, and their revisions are saved as the open tail.
+            Logger.INSTANCE.info("Extracting relation information of new revisions while writing groups...");
+            extractor = incrementalExtractor;
+            exporter = options.generateExporter(file);
+
+            long groupIdOffset = state.getLastGroupId();
+            long tailTime = lastTime;
+            long[] authorLastTimes = options.isPartitionByAuthor() ? getAuthorLastTimes(revisions) : null;
+            long[] lastGroupId = {groupIdOffset};
+            TreeSet<Revision> tailRevisions = new TreeSet<>();
+            List<RevisionGroup> openGroups = new ArrayList<>();
+
+            Iterator<RevisionGroup> groups = merger.stream()
+                    .map(group -> group.withGroupId(group.getGroupId() + groupIdOffset))
+                    .peek(group -> {
+                        if (isOpen(group, tailTime, authorLastTimes)) {
+                            tailRevisions.addAll(group.getRevisions());
+                        } else {
+                            lastGroupId[0] = group.getGroupId();
+                        }
+                    })
+                    .filter(group -> isAcceptable(group, options))
+                    .peek(group -> {
+                        if (isOpen(group, tailTime, authorLastTimes)) {
+                            openGroups.add(group);
+                        } else {
+                            extractor.add(group);
+                        }
+                    })
+                    .iterator();
+            exporter.exportGroups(() -> groups);
+
+            Logger.INSTANCE.info("Saving the state...");
+            state.setLastTime(lastTime);
+            state.setLastGroupId(lastGroupId[0]);
+            state.setTailRevisions(tailRevisions);
+            state.setLatestRevision(latestRevision);
+            state.write(options.getStateFile(), extractor);
 
-        // remove groups with many packages
-        Logger.INSTANCE.info("Removing groups with many packages...");
-        Iterator<RevisionGroup> groupIterator = groups.iterator();
+            openGroups.forEach(extractor::add);
 
-        while (groupIterator.hasNext()) {
-            RevisionGroup group = groupIterator.next();
-            int packageCount = group.getFiles().stream().map(FileName::getParent).collect(Collectors.toSet()).size();
+            Logger.INSTANCE.info("Writing data...");
+            accumulatedEntities = extractor.getAccumulatedEntities();
+        } else if (options.isStreaming()) {
+            // groups are filtered, written and counted one at a time, and released right after that.
+            // the revisions older than the head of a group are not in the group or later ones.
+            Logger.INSTANCE.info("Extracting relation information while writing groups...");
+            extractor = generateStreamingExtractor(options);
+            exporter = options.generateExporter(file);
 
-            if (packageCount > options.getMaxDistinctPackages()) {
-                groupIterator.remove();
+            Iterator<RevisionGroup> groups = merger.stream()
+                    .peek(group -> {
+                        if (releasing) {
+                            revisions.releaseBefore(group.getHeadTime());
+                        }
+                    })
+                    .filter(group -> isAcceptable(group, options))
+                    .peek(extractor::add)
+                    .iterator();
+            exporter.exportGroups(() -> groups);
+
+            Logger.INSTANCE.info("Writing data...");
+            accumulatedEntities = extractor.getAccumulatedEntities();
+        } else {
+            Set<RevisionGroup> groups = merger.merge();
+
+            // remove groups containing single file if the option is set, and groups with many packages.
+            Logger.INSTANCE.info("Removing groups with single file or many packages...");
+            groups.removeIf(group -> !isAcceptable(group, options));
+
+            // extract relation information
+            Logger.INSTANCE.info("Extracting relation information...");
+            extractor = new FileRelationExtractor(groups)
+                    .setParallelism(options.getThreads())
+                    .setMaxPairsInMemory(options.getMaxPairsInMemory(), options.getSpillDirectory())
+                    .setMinPairCount(options.getMinPairCount());
+
+            if (options.isApproximate()) {
+                extractor.setApproximate(options.getLshBands(), options.getLshRows());
             }
 
-        }
+            accumulatedEntities = extractor.getAccumulatedEntities();
 
-        // extract relation information
-        Logger.INSTANCE.info("Extracting relation information...");
-        FileRelationExtractor extractor = new FileRelationExtractor(groups);
-        TreeMap<FileName, AccumulatedEntity> accumulatedEntities = extractor.getAccumulatedEntities();
-        TreeMap<FileName, TreeMap<FileName, Integer>> pairEntities = extractor.getPairEntities();
+            // save relation information as sqlite db
+            Logger.INSTANCE.info("Writing data...");
+            exporter = options.generateExporter(file);
+            exporter.exportGroups(groups);
+        }
 
-        // save relation information as sqlite db
-        Logger.INSTANCE.info("Writing data...");
-        FileRelationExporter exporter = options.generateExporter();
-        exporter.exportGroups(groups);
         exporter.exportAccumulatedEntities(accumulatedEntities);
-        exporter.exportPairEntities(pairEntities);
+        exporter.exportPairEntities(extractor.getPairEntityIterator());
         exporter.exportOptions(options);
         exporter.exportLatestRevision(latestRevision);
+        extractor.close();
+    }
 
-        // print information
-        long endTime = System.currentTimeMillis();
+    private FileRelationExtractor generateStreamingExtractor(CommandOptions options) {
+        FileRelationExtractor extractor = new FileRelationExtractor()
+                .setMaxPairsInMemory(options.getMaxPairsInMemory(), options.getSpillDirectory())
+                .setMinPairCount(options.getMinPairCount());
 
-        Logger.INSTANCE.info(String.format("Done. (%dms elapsed)", endTime - startTime));
-        Logger.INSTANCE.info(String.format("%s created.", file.getAbsolutePath()));
+        if (options.isApproximate()) {
+            extractor.setApproximate(options.getLshBands(), options.getLshRows());
+        }
+
+        return extractor;
+    }
+
+    // whether the group contains the latest revision, which means later revisions may be merged into it.
+    // if merged by authors, the latest revision of the author of the group is used instead.
+    private boolean isOpen(RevisionGroup group, long lastTime, long[] authorLastTimes) {
+        if (authorLastTimes != null) {
+            int author = group.getStore().getAuthorId(group.getIndex(group.size() - 1));
+
+            return group.getLastTime() == authorLastTimes[author];
+        }
+
+        return group.getLastTime() == lastTime;
     }
 
-    private void removeSingleFileGroup(Set<RevisionGroup> groups) {
-        Iterator<RevisionGroup> groupIterator = groups.iterator();
+    // time of the latest revision of each author id, among the revisions used by mergers.
+    private long[] getAuthorLastTimes(RevisionStore revisions) {
+        long[] lastTimes = new long[0];
 
-        while (groupIterator.hasNext()) {
-            RevisionGroup group = groupIterator.next();
+        for (int index : revisions.getTimeOrder()) {
+            int author = revisions.getAuthorId(index);
 
-            if (group.getFiles().size() < 2) {
-                groupIterator.remove();
+            if (author >= lastTimes.length) {
+                lastTimes = Arrays.copyOf(lastTimes, author + 1);
             }
+
+            lastTimes[author] = revisions.getTime(index);
+        }
+
+        return lastTimes;
+    }
+
+    // whether the group should be used, according to the single file and distinct package options.
+    private boolean isAcceptable(RevisionGroup group, CommandOptions options) {
+        int[] fileIds = group.getFileIds();
+        FileDictionary files = group.getStore().getFileDictionary();
+
+        if (options.isIgnoreSingleFileGroup() && fileIds.length < 2) {
+            return false;
         }
+
+        long packageCount = Arrays.stream(fileIds).map(id -> files.getFile(id).getParentId()).distinct().count();
+
+        return packageCount <= options.getMaxDistinctPackages();
     }
 
 }
@@ -1,5 +1,6 @@
 package command;
 
+import collect.GitCliRevisionCollector;
 import collect.GitRevisionCollector;
 import collect.RevisionCollector;
 import collect.SvnRevisionCollector;
@@ -7,11 +8,14 @@ import com.beust.jcommander.Parameter;
 import export.CsvFileRelationExporter;
 import export.FileRelationExporter;
 import export.SqliteFileRelationExporter;
+import merge.AuthorPartitionedMerger;
 import merge.DistanceMerger;
 import merge.NoMerger;
 import merge.RevisionMerger;
 import merge.SlidingWindowMerger;
+import merge.TicketMerger;
 import model.FileName;
+import model.PathDictionary;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.tmatesoft.svn.core.SVNException;
 import utils.Logger;
@@ -32,6 +36,12 @@ public class CommandOptions {
     public static final String PARAMETER_SHORT_GIT_TEMP_DIR = "-gtd";
     public static final String PARAMETER_FULL_PRESERVE_GIT_TEMP = "--preserve-git-temp-dir";
     public static final String PARAMETER_SHORT_PRESERVE_GIT_TEMP = "-pgtd";
+    public static final String PARAMETER_FULL_GIT_CACHE_DIR = "--git-cache-dir";
+    public static final String PARAMETER_SHORT_GIT_CACHE_DIR = "-gcd";
+    public static final String PARAMETER_FULL_GIT_CHANGED_PATH_INDEX = "--git-changed-path-index";
+    public static final String PARAMETER_SHORT_GIT_CHANGED_PATH_INDEX = "-gcpi";
+    public static final String PARAMETER_FULL_GIT_BACKEND = "--git-backend";
+    public static final String PARAMETER_SHORT_GIT_BACKEND = "-gb";
     public static final String PARAMETER_FULL_FROM = "--from";
     public static final String PARAMETER_SHORT_FROM = "-f";
     public static final String PARAMETER_FULL_TO = "--to";
@@ -58,6 +68,32 @@ public class CommandOptions {
     public static final String PARAMETER_SHORT_HELP = "-h";
     public static final String PARAMETER_FULL_MAX_DISTINCT_PACKAGES = "--max-distinct-packages";
     public static final String PARAMETER_SHORT_MAX_DISTINCT_PACKAGES = "-mdp";
+    public static final String PARAMETER_FULL_THREADS = "--threads";
+    public static final String PARAMETER_SHORT_THREADS = "-th";
+    public static final String PARAMETER_FULL_STREAMING = "--streaming";
+    public static final String PARAMETER_SHORT_STREAMING = "-st";
+    public static final String PARAMETER_FULL_MAX_PAIRS_IN_MEMORY = "--max-pairs-in-memory";
+    public static final String PARAMETER_SHORT_MAX_PAIRS_IN_MEMORY = "-mpm";
+    public static final String PARAMETER_FULL_SPILL_DIR = "--spill-dir";
+    public static final String PARAMETER_SHORT_SPILL_DIR = "-sd";
+    public static final String PARAMETER_FULL_MIN_PAIR_COUNT = "--min-pair-count";
+    public static final String PARAMETER_SHORT_MIN_PAIR_COUNT = "-mpc";
+    public static final String PARAMETER_FULL_APPROXIMATE = "--approximate";
+    public static final String PARAMETER_SHORT_APPROXIMATE = "-ap";
+    public static final String PARAMETER_FULL_LSH_BANDS = "--lsh-bands";
+    public static final String PARAMETER_SHORT_LSH_BANDS = "-lb";
+    public static final String PARAMETER_FULL_LSH_ROWS = "--lsh-rows";
+    public static final String PARAMETER_SHORT_LSH_ROWS = "-lr";
+    public static final String PARAMETER_FULL_INCREMENTAL = "--incremental";
+    public static final String PARAMETER_SHORT_INCREMENTAL = "-inc";
+    public static final String PARAMETER_FULL_PARTITION_BY_AUTHOR = "--partition-by-author";
+    public static final String PARAMETER_SHORT_PARTITION_BY_AUTHOR = "-pba";
+    public static final String PARAMETER_FULL_SWEEP_WINDOW_SIZES = "--sweep-window-sizes";
+    public static final String PARAMETER_SHORT_SWEEP_WINDOW_SIZES = "-sw";
+    public static final String PARAMETER_FULL_TICKET_PATTERN = "--ticket-pattern";
+    public static final String PARAMETER_SHORT_TICKET_PATTERN = "-tp";
+    public static final String PARAMETER_FULL_TICKET_FALLBACK = "--ticket-fallback";
+    public static final String PARAMETER_SHORT_TICKET_FALLBACK = "-tf";
     public static final String PARAMETER_FULL_DEBUG = "--debug";
 
     public static final String DATE_STRING_FORMAT = "yyyy-MM-dd HH:mm:ss";
@@ -66,10 +102,12 @@ public class CommandOptions {
     public static final String DEFAULT_BRANCH = "";
     public static final String DEFAULT_CSV_POSTFIX = "_csv";
     public static final String DEFAULT_SQLITE_POSTFIX = ".sqlite";
+    public static final String DEFAULT_STATE_POSTFIX = ".state";
 
-    public enum MergeMethod {Window, DuplicatedWindow, Distance, NoMerge}
+    public enum MergeMethod {Window, DuplicatedWindow, Distance, NoMerge, Ticket}
     public enum DuplicatedHandlingMethod {Error, Override, Numbering}
     public enum UrlType {INVALID, GIT, SVN}
+    public enum GitBackend {JGit, Cli}
 
     public enum ExportType {CSV, SQLITE}
 
@@ -88,6 +126,21 @@ public class CommandOptions {
     @Parameter(names = {PARAMETER_FULL_PRESERVE_GIT_TEMP, PARAMETER_SHORT_PRESERVE_GIT_TEMP}, description = "(REMOTE GIT ONLY) preserves the temp. git directory.")
     private boolean preserveGitTempDir = false;
 
+    @Parameter(names = {PARAMETER_FULL_GIT_CACHE_DIR, PARAMETER_SHORT_GIT_CACHE_DIR}, description = "(GIT ONLY) " +
+            "keeps a mirror of a remote repository in the directory, and fetches only new commits in the next runs. " +
+            "The indexes of the repository are kept in it too.")
+    private String gitCacheDirectoryName = "";
+
+    @Parameter(names = {PARAMETER_FULL_GIT_CHANGED_PATH_INDEX, PARAMETER_SHORT_GIT_CHANGED_PATH_INDEX},
+            description = "(GIT ONLY) keeps the changed paths of the commits in the git cache directory, " +
+                    "and diffs only new commits in the next runs. Not used without " + PARAMETER_FULL_GIT_CACHE_DIR + ".")
+    private boolean gitChangedPathIndex = false;
+
+    @Parameter(names = {PARAMETER_FULL_GIT_BACKEND, PARAMETER_SHORT_GIT_BACKEND},
+            description = "(LOCAL GIT ONLY) collects revisions with JGit, or with the git binary if Cli is given. " +
+                    "JGit is used if the git binary can't be run.")
+    private GitBackend gitBackend = GitBackend.JGit;
+
     @Parameter(names = {PARAMETER_FULL_FROM, PARAMETER_SHORT_FROM},
             converter = EpochConverter.class,
             description = "Starting time of the revisions. Must be '" + DATE_STRING_FORMAT + "' format.")
@@ -121,6 +174,24 @@ public class CommandOptions {
             description = "The method to merge commits into groups.")
     private MergeMethod mergeMethodType = MergeMethod.Window;
 
+    @Parameter(names = {PARAMETER_FULL_PARTITION_BY_AUTHOR, PARAMETER_SHORT_PARTITION_BY_AUTHOR},
+            description = "Merge the commits of each author separately, so commits of other authors between them " +
+                    "don't split the groups. Authors are merged in parallel with the given number of threads.")
+    private boolean partitionByAuthor = false;
+
+    @Parameter(names = {PARAMETER_FULL_SWEEP_WINDOW_SIZES, PARAMETER_SHORT_SWEEP_WINDOW_SIZES}, variableArity = true,
+            description = "Window sizes in second(s) to compare, separated by space. The revisions are collected " +
+                    "once, and the result of each size is exported to a file named with the size, like result_w60.")
+    private List<Integer> sweepWindowSizes = new ArrayList<>();
+
+    @Parameter(names = {PARAMETER_FULL_TICKET_PATTERN, PARAMETER_SHORT_TICKET_PATTERN},
+            description = "Regular expression of the ticket keys in commit messages, used by the Ticket merge method.")
+    private String ticketPattern = TicketMerger.DEFAULT_TICKET_PATTERN;
+
+    @Parameter(names = {PARAMETER_FULL_TICKET_FALLBACK, PARAMETER_SHORT_TICKET_FALLBACK},
+            description = "The method to merge commits without ticket keys in the Ticket merge method.")
+    private MergeMethod ticketFallback = MergeMethod.NoMerge;
+
     @Parameter(names = {PARAMETER_FULL_IGNORE_SINGLE_FILE_GROUP, PARAMETER_SHORT_IGNORE_SINGLE_FILE_GROUP},
             description = "Ignore groups with single file.")
     private boolean ignoreSingleFileGroup = false;
@@ -128,6 +199,54 @@ public class CommandOptions {
     @Parameter(names = {PARAMETER_FULL_MAX_DISTINCT_PACKAGES, PARAMETER_SHORT_MAX_DISTINCT_PACKAGES}, description = "the maximum number of distinct packages in a single group.")
     private int maxDistinctPackages = 5;
 
+    /* EXTRACT */
+    @Parameter(names = {PARAMETER_FULL_THREADS, PARAMETER_SHORT_THREADS},
+            validateWith = PositiveIntegerValidator.class,
+            description = "Number of threads used in diffing git commits, the extraction phase and " +
+                    "the partitioned merging. 1 will extract sequentially.")
+    private int threads = 1;
+
+    @Parameter(names = {PARAMETER_FULL_STREAMING, PARAMETER_SHORT_STREAMING},
+            description = "Extract relations while consuming groups one at a time, to reduce memory usage. " +
+                    "The extraction is done sequentially.")
+    private boolean streaming = false;
+
+    @Parameter(names = {PARAMETER_FULL_MAX_PAIRS_IN_MEMORY, PARAMETER_SHORT_MAX_PAIRS_IN_MEMORY},
+            description = "Maximum number of file pairs kept in memory by each thread. " +
+                    "Exceeding pairs are sorted and written to the spill directory. 0 will be treated as no limit.")
+    private int maxPairsInMemory = 0;
+
+    @Parameter(names = {PARAMETER_FULL_SPILL_DIR, PARAMETER_SHORT_SPILL_DIR},
+            description = "Directory of the spilled file pairs. The default temp directory will be used if not given.")
+    private String spillDirectoryName = "";
+
+    @Parameter(names = {PARAMETER_FULL_MIN_PAIR_COUNT, PARAMETER_SHORT_MIN_PAIR_COUNT},
+            description = "Minimum count of the exported file pairs. Pairs which can't reach the count are " +
+                    "filtered out while counting, except in the streaming mode.")
+    private int minPairCount = 0;
+
+    @Parameter(names = {PARAMETER_FULL_APPROXIMATE, PARAMETER_SHORT_APPROXIMATE},
+            description = "Count only the file pairs found by min-hash signatures, and export estimated jaccard " +
+                    "similarities. Pairs changed together rarely may be missed.")
+    private boolean approximate = false;
+
+    @Parameter(names = {PARAMETER_FULL_LSH_BANDS, PARAMETER_SHORT_LSH_BANDS},
+            description = "Number of signature bands in the approximate mode. More bands find more pairs.")
+    private int lshBands = 20;
+
+    @Parameter(names = {PARAMETER_FULL_LSH_ROWS, PARAMETER_SHORT_LSH_ROWS},
+            description = "Number of signature values in a band in the approximate mode. " +
+                    "More rows find only more similar pairs.")
+    private int lshRows = 5;
+
+    @Parameter(names = {PARAMETER_FULL_INCREMENTAL, PARAMETER_SHORT_INCREMENTAL},
+            description = "Save the extraction state next to the export file, and extract only the revisions " +
+                    "not in the history of the saved heads in the next run. Groups of the previous runs are not " +
+                    "exported again. All revisions are extracted again if a new revision is dated at or before " +
+                    "the saved state, like a merged branch, or the saved heads are not in the history. " +
+                    "The limit is applied only to the first run. Can't be used with the approximate mode.")
+    private boolean incremental = false;
+
     /* EXPORT */
     @Parameter(names = {PARAMETER_FULL_EXPORT_FILE_NAME, PARAMETER_SHORT_EXPORT_FILE_NAME},
             description = "File name of the export result.")
@@ -192,6 +311,30 @@ public class CommandOptions {
         this.preserveGitTempDir = preserveGitTempDir;
     }
 
+    public String getGitCacheDirectoryName() {
+        return gitCacheDirectoryName;
+    }
+
+    public void setGitCacheDirectoryName(String gitCacheDirectoryName) {
+        this.gitCacheDirectoryName = gitCacheDirectoryName;
+    }
+
+    public boolean isGitChangedPathIndex() {
+        return gitChangedPathIndex;
+    }
+
+    public void setGitChangedPathIndex(boolean gitChangedPathIndex) {
+        this.gitChangedPathIndex = gitChangedPathIndex;
+    }
+
+    public GitBackend getGitBackend() {
+        return gitBackend;
+    }
+
+    public void setGitBackend(GitBackend gitBackend) {
+        this.gitBackend = gitBackend;
+    }
+
     public long getRevisionFrom() {
         return revisionFrom;
     }
@@ -224,6 +367,38 @@ public class CommandOptions {
         this.mergeMethodType = mergeMethodType;
     }
 
+    public List<Integer> getSweepWindowSizes() {
+        return sweepWindowSizes;
+    }
+
+    public void setSweepWindowSizes(List<Integer> sweepWindowSizes) {
+        this.sweepWindowSizes = sweepWindowSizes;
+    }
+
+    public String getTicketPattern() {
+        return ticketPattern;
+    }
+
+    public void setTicketPattern(String ticketPattern) {
+        this.ticketPattern = ticketPattern;
+    }
+
+    public MergeMethod getTicketFallback() {
+        return ticketFallback;
+    }
+
+    public void setTicketFallback(MergeMethod ticketFallback) {
+        this.ticketFallback = ticketFallback;
+    }
+
+    public boolean isPartitionByAuthor() {
+        return partitionByAuthor;
+    }
+
+    public void setPartitionByAuthor(boolean partitionByAuthor) {
+        this.partitionByAuthor = partitionByAuthor;
+    }
+
     public ExportType getExportType() {
         return exportType;
     }
@@ -257,6 +432,26 @@ public class CommandOptions {
         exportFile = null;
     }
 
+    // export file name of a window size of the sweep. the size is added before the extension.
+    public String getWindowExportFileName(int windowSize) {
+        File file = new File(getExportFileName());
+        String name = file.getName();
+        int extensionIndex = name.lastIndexOf('.');
+        String suffix = "_w" + windowSize;
+
+        if (extensionIndex < 0) {
+            name += suffix;
+        } else {
+            name = name.substring(0, extensionIndex) + suffix + name.substring(extensionIndex);
+        }
+
+        return new File(file.getParentFile(), name).getPath();
+    }
+
+    public File getWindowExportFile(int windowSize) throws IOException {
+        return generateFile(getWindowExportFileName(windowSize));
+    }
+
     public File getExportFile() throws IOException {
         if (exportFile == null) {
             exportFile = generateFile(getExportFileName());
@@ -305,6 +500,84 @@ public class CommandOptions {
         this.maxDistinctPackages = maxDistinctPackages;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public int getMaxPairsInMemory() {
+        return maxPairsInMemory;
+    }
+
+    public void setMaxPairsInMemory(int maxPairsInMemory) {
+        this.maxPairsInMemory = maxPairsInMemory;
+    }
+
+    // null if the default temp directory should be used.
+    public File getSpillDirectory() {
+        return spillDirectoryName.isEmpty() ? null : new File(spillDirectoryName);
+    }
+
+    public void setSpillDirectoryName(String spillDirectoryName) {
+        this.spillDirectoryName = spillDirectoryName;
+    }
+
+    public int getMinPairCount() {
+        return minPairCount;
+    }
+
+    public void setMinPairCount(int minPairCount) {
+        this.minPairCount = minPairCount;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    public int getLshBands() {
+        return lshBands;
+    }
+
+    public void setLshBands(int lshBands) {
+        this.lshBands = lshBands;
+    }
+
+    public int getLshRows() {
+        return lshRows;
+    }
+
+    public void setLshRows(int lshRows) {
+        this.lshRows = lshRows;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    // the state file of the incremental mode. its name doesn't depend on the duplicated file handling.
+    public File getStateFile() {
+        return new File(getExportFileName() + DEFAULT_STATE_POSTFIX);
+    }
+
     public List<String> getIgnoreStrings() {
         return ignoreStrings;
     }
@@ -345,6 +618,13 @@ public class CommandOptions {
             }
             collector.setPreserveTemp(isPreserveGitTempDir());
 
+            if (!getGitCacheDirectoryName().isEmpty()) {
+                collector.setCacheDirectory(new File(getGitCacheDirectoryName()));
+            }
+
+            collector.setChangedPathIndex(isGitChangedPathIndex());
+            collector.setParallelism(getThreads());
+
             if (!branch.isEmpty()) {
                 collector.setBranch(branch);
             }
@@ -352,6 +632,16 @@ public class CommandOptions {
             urlType = UrlType.GIT;
             Logger.INSTANCE.info(String.format("%s GIT repository found.", collector.isLocalFile() ? "Local" : "Remote"));
 
+            if (getGitBackend() == GitBackend.Cli) {
+                if (collector.isLocalFile() && GitCliRevisionCollector.isAvailable()) {
+                    Logger.INSTANCE.info("Revisions are collected with the git binary.");
+
+                    return new GitCliRevisionCollector(new File(getTargetUrl().getPath()), collector.getBranch());
+                }
+
+                Logger.INSTANCE.info("The git binary can't be used. Revisions are collected with JGit.");
+            }
+
             return collector;
         } catch (GitAPIException e) {
             try {
@@ -387,7 +677,7 @@ public class CommandOptions {
                     throw new IOException("File already exists.");
                 case Numbering:
                     int duplicatedCount = 0;
-                    FileName newName = new FileName(fileName);
+                    FileName newName = new FileName(fileName, new PathDictionary());
 
                     while (file.exists()) {
                         duplicatedCount++;
@@ -408,29 +698,64 @@ public class CommandOptions {
 
     // generate RevisionMerger instance based on given options.
     public RevisionMerger generateMerger() {
-        switch (getMergeMethodType()) {
+        return generateMerger(getSlidingWindowSize());
+    }
+
+    // merger of the given window size instead of the sliding window size option, for a window size of the sweep.
+    public RevisionMerger generateMerger(int windowSize) {
+        RevisionMerger merger = generateMerger(getMergeMethodType(), windowSize);
+
+        if (isPartitionByAuthor()) {
+            merger = new AuthorPartitionedMerger(merger).setParallelism(getThreads());
+        }
+
+        return merger;
+    }
+
+    private RevisionMerger generateMerger(MergeMethod method, int windowSize) {
+        RevisionMerger merger;
+
+        switch (method) {
             case DuplicatedWindow:
-                return new SlidingWindowMerger()
-                        .setWindowSizeInSecond(getSlidingWindowSize())
+                merger = new SlidingWindowMerger()
+                        .setWindowSizeInSecond(windowSize)
                         .setAllowDuplicated(true);
+                break;
             case Window:
-                return new SlidingWindowMerger()
-                        .setWindowSizeInSecond(getSlidingWindowSize())
+                merger = new SlidingWindowMerger()
+                        .setWindowSizeInSecond(windowSize)
                         .setAllowDuplicated(false);
+                break;
             case Distance:
-                return new DistanceMerger()
-                        .setWindowSizeInSecond(getSlidingWindowSize());
+                merger = new DistanceMerger()
+                        .setWindowSizeInSecond(windowSize);
+                break;
+            case Ticket:
+                if (getTicketFallback() == MergeMethod.Ticket) {
+                    throw new IllegalArgumentException("The Ticket merge method can't be its own fallback.");
+                }
+
+                merger = new TicketMerger()
+                        .setTicketPattern(getTicketPattern())
+                        .setFallback(generateMerger(getTicketFallback(), windowSize));
+                break;
             default:
-                return new NoMerger();
+                merger = new NoMerger();
         }
+
+        return merger;
     }
 
     public FileRelationExporter generateExporter() throws IOException, SQLException, ClassNotFoundException {
+        return generateExporter(getExportFile());
+    }
+
+    public FileRelationExporter generateExporter(File file) throws IOException, SQLException, ClassNotFoundException {
         switch (getExportType()) {
             case CSV:
-                return new CsvFileRelationExporter(getExportFile());
+                return new CsvFileRelationExporter(file);
             case SQLITE:
-                return new SqliteFileRelationExporter(getExportFile());
+                return new SqliteFileRelationExporter(file);
             default:
                 return null; // can't reach
         }
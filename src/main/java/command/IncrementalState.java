@@ -0,0 +1,195 @@
+package command;
+
+import extract.FileRelationExtractor;
+import model.FileName;
+import model.PathDictionary;
+import model.Revision;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// state of an incremental extraction, saved next to the export file.
+// groups which can't be changed by later revisions are kept only as counts in the extractor state,
+// and the revisions of the other groups (open tail) are kept to be merged again with the new revisions.
+// the heads of the processed history are kept, and the next run collects only revisions not in their history.
+public class IncrementalState {
+    private static final int MAGIC = 0x46524553; // "FRES"
+    private static final int VERSION = 2;
+
+    private final String key; // options which change the result. the state is used only by the same options.
+    private List<String> heads = new ArrayList<>(); // heads of the processed history
+    private long lastTime = -1; // time of the latest processed revision
+    private long lastGroupId = 0; // id of the last group which is not in the open tail
+    private List<Revision> tailRevisions = new ArrayList<>();
+    private Revision latestRevision = null;
+
+    public IncrementalState(CommandOptions options) {
+        this.key = String.join("\n",
+                options.getTargetUrl().toExternalForm(),
+                options.getBranch(),
+                String.valueOf(options.getRevisionFrom()),
+                String.valueOf(options.getRevisionTo()),
+                String.valueOf(options.getLimit()),
+                String.valueOf(options.getMergeMethodType()),
+                String.valueOf(options.isPartitionByAuthor()),
+                String.valueOf(options.getSlidingWindowSize()),
+                String.valueOf(options.isIgnoreSingleFileGroup()),
+                String.valueOf(options.getMaxDistinctPackages()),
+                String.valueOf(options.getExtensions()),
+                String.valueOf(options.getIgnoreStrings()));
+    }
+
+    // reads the state and restores the extractor, which should be empty.
+    // file names are made with the dictionary of the run.
+    // returns false if the file doesn't exist or was saved with different options.
+    public boolean read(File file, FileRelationExtractor extractor, PathDictionary pathDictionary) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || !input.readUTF().equals(key)) {
+                return false;
+            }
+
+            int headCount = input.readInt();
+            heads = new ArrayList<>(headCount);
+
+            for (int i = 0; i < headCount; i++) {
+                heads.add(input.readUTF());
+            }
+
+            lastTime = input.readLong();
+            lastGroupId = input.readLong();
+
+            int tailSize = input.readInt();
+            tailRevisions = new ArrayList<>(tailSize);
+
+            for (int i = 0; i < tailSize; i++) {
+                tailRevisions.add(readRevision(input, pathDictionary));
+            }
+
+            latestRevision = input.readBoolean() ? readRevision(input, pathDictionary) : null;
+
+            extractor.readState(input, pathDictionary);
+        }
+
+        return true;
+    }
+
+    // the file is replaced at once, so a failed run leaves the previous state.
+    public void write(File file, FileRelationExtractor extractor) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(key);
+            output.writeInt(heads.size());
+
+            for (String head : heads) {
+                output.writeUTF(head);
+            }
+
+            output.writeLong(lastTime);
+            output.writeLong(lastGroupId);
+            output.writeInt(tailRevisions.size());
+
+            for (Revision revision : tailRevisions) {
+                writeRevision(output, revision);
+            }
+
+            output.writeBoolean(latestRevision != null);
+
+            if (latestRevision != null) {
+                writeRevision(output, latestRevision);
+            }
+
+            extractor.writeState(output);
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public List<String> getHeads() {
+        return heads;
+    }
+
+    public void setHeads(Collection<String> heads) {
+        this.heads = new ArrayList<>(heads);
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    public void setLastTime(long lastTime) {
+        this.lastTime = lastTime;
+    }
+
+    public long getLastGroupId() {
+        return lastGroupId;
+    }
+
+    public void setLastGroupId(long lastGroupId) {
+        this.lastGroupId = lastGroupId;
+    }
+
+    public List<Revision> getTailRevisions() {
+        return tailRevisions;
+    }
+
+    public void setTailRevisions(Collection<Revision> tailRevisions) {
+        this.tailRevisions = new ArrayList<>(tailRevisions);
+    }
+
+    public Revision getLatestRevision() {
+        return latestRevision;
+    }
+
+    public void setLatestRevision(Revision latestRevision) {
+        this.latestRevision = latestRevision;
+    }
+
+    private static void writeRevision(DataOutput output, Revision revision) throws IOException {
+        output.writeUTF(revision.getId());
+        output.writeLong(revision.getTime());
+        output.writeUTF(revision.getAuthor());
+        writeLongString(output, revision.getMessage());
+        output.writeInt(revision.getChangedFiles().size());
+
+        for (FileName file : revision.getChangedFiles()) {
+            output.writeUTF(file.toString());
+        }
+    }
+
+    private static Revision readRevision(DataInput input, PathDictionary pathDictionary) throws IOException {
+        Revision revision = new Revision(input.readUTF(), input.readLong(), input.readUTF(), readLongString(input));
+        int size = input.readInt();
+
+        for (int i = 0; i < size; i++) {
+            revision.addFile(new FileName(input.readUTF(), pathDictionary));
+        }
+
+        return revision;
+    }
+
+    // commit messages may be longer than the limit of writeUTF().
+    private static void writeLongString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes("UTF-8");
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readLongString(DataInput input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,21 @@
+package command;
+
+import com.beust.jcommander.IParameterValidator;
+import com.beust.jcommander.ParameterException;
+
+public class PositiveIntegerValidator implements IParameterValidator {
+    @Override
+    public void validate(String name, String value) throws ParameterException {
+        int number;
+
+        try {
+            number = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ParameterException(name + " should be an integer. (found " + value + ")");
+        }
+
+        if (number < 1) {
+            throw new ParameterException(name + " should be a positive integer. (found " + value + ")");
+        }
+    }
+}
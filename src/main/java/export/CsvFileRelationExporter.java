@@ -12,7 +12,7 @@ import java.lang.reflect.Modifier;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -84,25 +84,27 @@ public class CsvFileRelationExporter implements FileRelationExporter {
     }
 
     @Override
-    public void exportPairEntities(TreeMap<FileName, TreeMap<FileName, Integer>> pairs) throws Exception {
+    public void exportPairEntities(Iterator<PairEntity> pairs) throws Exception {
         Path path = rootDirectory.resolve(TABLE_PAIR + FILE_POSTFIX);
         Files.createFile(path);
         BufferedWriter writer = Files.newBufferedWriter(path);
 
-        writer.write(String.format("%S, %S, %S\n",
-                COLUMN_FROM, COLUMN_TO, COLUMN_COUNT));
-        for (Map.Entry<FileName, TreeMap<FileName, Integer>> from : pairs.entrySet()) {
-            for (Map.Entry<FileName, Integer> to : from.getValue().entrySet()) {
+        writer.write(String.format("%S, %S, %S, %S, %S, %S, %S, %S\n",
+                COLUMN_FROM, COLUMN_TO, COLUMN_COUNT,
+                COLUMN_SUPPORT, COLUMN_CONFIDENCE, COLUMN_REVERSE_CONFIDENCE, COLUMN_LIFT, COLUMN_JACCARD));
+        while (pairs.hasNext()) {
+            PairEntity pair = pairs.next();
 
-                writer.write(String.format("%S, %S, %S\n",
-                        from.getKey().toString(), to.getKey().toString(), to.getValue()));
-            }
+            writer.write(String.format("%S, %S, %S, %S, %S, %S, %S, %S\n",
+                    pair.getFrom().toString(), pair.getTo().toString(), pair.getCount(),
+                    pair.getSupport(), pair.getConfidence(), pair.getReverseConfidence(), pair.getLift(),
+                    pair.getJaccard()));
         }
         writer.close();
     }
 
     @Override
-    public void exportGroups(Collection<RevisionGroup> groups) throws Exception {
+    public void exportGroups(Iterable<RevisionGroup> groups) throws Exception {
         Path groupPath = rootDirectory.resolve(TABLE_GROUP + FILE_POSTFIX);
         Files.createFile(groupPath);
         BufferedWriter groupWriter = Files.newBufferedWriter(groupPath);
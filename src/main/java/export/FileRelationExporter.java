@@ -3,11 +3,12 @@ package export;
 import command.CommandOptions;
 import model.AccumulatedEntity;
 import model.FileName;
+import model.PairEntity;
 import model.Revision;
 import model.RevisionGroup;
 
 import java.sql.SQLException;
-import java.util.Collection;
+import java.util.Iterator;
 import java.util.TreeMap;
 
 public interface FileRelationExporter {
@@ -31,6 +32,11 @@ public interface FileRelationExporter {
     String COLUMN_FROM = "FromFile";
     String COLUMN_TO = "ToFile";
     String COLUMN_COUNT = "Count";
+    String COLUMN_SUPPORT = "Support";
+    String COLUMN_CONFIDENCE = "Confidence";
+    String COLUMN_REVERSE_CONFIDENCE = "ReverseConfidence";
+    String COLUMN_LIFT = "Lift";
+    String COLUMN_JACCARD = "Jaccard";
     String COLUMN_AUTHOR = "Author";
     String COLUMN_MESSAGE = "Message";
 
@@ -38,9 +44,9 @@ public interface FileRelationExporter {
 
     void exportAccumulatedEntities(TreeMap<FileName, AccumulatedEntity> accumulated) throws Exception;
 
-    void exportPairEntities(TreeMap<FileName, TreeMap<FileName, Integer>> pairs) throws Exception;
+    void exportPairEntities(Iterator<PairEntity> pairs) throws Exception;
 
-    void exportGroups(Collection<RevisionGroup> groups) throws Exception;
+    void exportGroups(Iterable<RevisionGroup> groups) throws Exception;
 
     void exportLatestRevision(Revision revision) throws Exception;
 }
@@ -58,7 +58,7 @@ public class SqliteFileRelationExporter implements FileRelationExporter {
 
 
     @Override
-    public void exportPairEntities(TreeMap<FileName, TreeMap<FileName, Integer>> pairs) throws SQLException {
+    public void exportPairEntities(Iterator<PairEntity> pairs) throws SQLException {
         try {
             Connection c = getConnection(dbFile);
 
@@ -73,7 +73,7 @@ public class SqliteFileRelationExporter implements FileRelationExporter {
     }
 
     @Override
-    public void exportGroups(Collection<RevisionGroup> groups) throws SQLException {
+    public void exportGroups(Iterable<RevisionGroup> groups) throws SQLException {
         try {
             Connection c = getConnection(dbFile);
 
@@ -187,9 +187,11 @@ public class SqliteFileRelationExporter implements FileRelationExporter {
     private void createPairTable(Connection c) throws SQLException {
         String createPair = String.format("CREATE TABLE %s (" +
                         "%s STRING NOT NULL, %s STRING NOT NULL, %s INT, " +
+                        "%s REAL, %s REAL, %s REAL, %s REAL, %s REAL, " +
                         "PRIMARY KEY(%s, %s))",
                 TABLE_PAIR,
                 COLUMN_FROM, COLUMN_TO, COLUMN_COUNT,
+                COLUMN_SUPPORT, COLUMN_CONFIDENCE, COLUMN_REVERSE_CONFIDENCE, COLUMN_LIFT, COLUMN_JACCARD,
                 COLUMN_FROM, COLUMN_TO
         );
 
@@ -198,26 +200,33 @@ public class SqliteFileRelationExporter implements FileRelationExporter {
         createPairStatement.close();
     }
 
-    private void putPairRows(TreeMap<FileName, TreeMap<FileName, Integer>> pairs, Connection c) throws SQLException {
-        String insertPair = String.format("INSERT INTO %S (%S, %S, %S) VALUES (?, ?, ?)",
+    private void putPairRows(Iterator<PairEntity> pairs, Connection c) throws SQLException {
+        String insertPair = String.format("INSERT INTO %S (%S, %S, %S, %S, %S, %S, %S, %S) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
                 TABLE_PAIR,
-                COLUMN_FROM, COLUMN_TO, COLUMN_COUNT);
+                COLUMN_FROM, COLUMN_TO, COLUMN_COUNT,
+                COLUMN_SUPPORT, COLUMN_CONFIDENCE, COLUMN_REVERSE_CONFIDENCE, COLUMN_LIFT, COLUMN_JACCARD);
         PreparedStatement insertPairStatement = c.prepareStatement(insertPair);
 
-        for (Map.Entry<FileName, TreeMap<FileName, Integer>> from : pairs.entrySet()) {
-            for (Map.Entry<FileName, Integer> to : from.getValue().entrySet()) {
-                insertPairStatement.setString(1, from.getKey().toString());
-                insertPairStatement.setString(2, to.getKey().toString());
-                insertPairStatement.setInt(3, to.getValue());
+        while (pairs.hasNext()) {
+            PairEntity pair = pairs.next();
 
-                insertPairStatement.executeUpdate();
-            }
+            insertPairStatement.setString(1, pair.getFrom().toString());
+            insertPairStatement.setString(2, pair.getTo().toString());
+            insertPairStatement.setInt(3, pair.getCount());
+            insertPairStatement.setDouble(4, pair.getSupport());
+            insertPairStatement.setDouble(5, pair.getConfidence());
+            insertPairStatement.setDouble(6, pair.getReverseConfidence());
+            insertPairStatement.setDouble(7, pair.getLift());
+            insertPairStatement.setDouble(8, pair.getJaccard());
+
+            insertPairStatement.executeUpdate();
         }
 
         insertPairStatement.close();
     }
 
-    private void putGroupRows(Collection<RevisionGroup> groups, Connection c) throws SQLException {
+    private void putGroupRows(Iterable<RevisionGroup> groups, Connection c) throws SQLException {
         // group put statement
         String insertGroup = String.format("INSERT INTO %S (%S, %S) VALUES (?, ?)",
                 TABLE_GROUP,
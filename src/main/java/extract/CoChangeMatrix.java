@@ -0,0 +1,153 @@
+package extract;
+
+import model.FileDictionary;
+import model.FileName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// immutable symmetric matrix of the pair counts in the compressed sparse row format.
+// the neighbors of file i are columns[offsets[i], offsets[i + 1]) in the ascending order of file ids,
+// and ranked[offsets[i], offsets[i + 1]) keeps the same neighbors in the descending order of counts.
+public class CoChangeMatrix {
+    private final FileDictionary dictionary;
+    private final int[] offsets;
+    private final int[] columns;
+    private final int[] counts;
+    private final int[] ranked;
+
+    // builds the matrix from the pairs of the cursor, which is consumed.
+    public CoChangeMatrix(FileDictionary dictionary, PairCursor pairs) {
+        this.dictionary = dictionary;
+
+        int fileCount = dictionary.size();
+        int size = 0;
+        int[] froms = new int[256], tos = new int[256], values = new int[256];
+
+        while (pairs.next()) {
+            if (size == froms.length) {
+                froms = Arrays.copyOf(froms, size << 1);
+                tos = Arrays.copyOf(tos, size << 1);
+                values = Arrays.copyOf(values, size << 1);
+            }
+
+            froms[size] = pairs.from;
+            tos[size] = pairs.to;
+            values[size] = pairs.count;
+            size++;
+        }
+
+        // count the neighbors of each file, then place both directions of every pair.
+        offsets = new int[fileCount + 1];
+
+        for (int i = 0; i < size; i++) {
+            offsets[froms[i] + 1]++;
+            offsets[tos[i] + 1]++;
+        }
+
+        for (int id = 0; id < fileCount; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+
+        // K: (column, count) of each entry, to sort the rows without boxing.
+        long[] entries = new long[size << 1];
+        int[] position = Arrays.copyOf(offsets, fileCount);
+
+        for (int i = 0; i < size; i++) {
+            entries[position[froms[i]]++] = ((long) tos[i] << 32) | values[i];
+            entries[position[tos[i]]++] = ((long) froms[i] << 32) | values[i];
+        }
+
+        columns = new int[entries.length];
+        counts = new int[entries.length];
+        ranked = new int[entries.length];
+
+        for (int id = 0; id < fileCount; id++) {
+            Arrays.sort(entries, offsets[id], offsets[id + 1]);
+
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                columns[i] = (int) (entries[i] >>> 32);
+                counts[i] = (int) entries[i];
+                // descending counts, then ascending ids
+                entries[i] = ((long) (Integer.MAX_VALUE - counts[i]) << 32) | columns[i];
+            }
+
+            Arrays.sort(entries, offsets[id], offsets[id + 1]);
+
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                ranked[i] = (int) entries[i];
+            }
+        }
+    }
+
+    public FileDictionary getDictionary() {
+        return dictionary;
+    }
+
+    // number of files, including files without neighbors.
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    // number of distinct files changed together with the given file.
+    public int degree(int id) {
+        return isValid(id) ? offsets[id + 1] - offsets[id] : 0;
+    }
+
+    // ids of the files changed together with the given file, in the ascending order of ids.
+    public int[] neighbors(int id) {
+        return isValid(id) ? Arrays.copyOfRange(columns, offsets[id], offsets[id + 1]) : new int[0];
+    }
+
+    public List<FileName> neighbors(FileName file) {
+        return toFiles(neighbors(dictionary.getId(file)));
+    }
+
+    // ids of at most k files most frequently changed together with the given file.
+    // files of the same count are ordered by their ids.
+    public int[] topN(int id, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        if (!isValid(id)) {
+            return new int[0];
+        }
+
+        return Arrays.copyOfRange(ranked, offsets[id], offsets[id] + Math.min(k, degree(id)));
+    }
+
+    public List<FileName> topN(FileName file, int k) {
+        return toFiles(topN(dictionary.getId(file), k));
+    }
+
+    // number of groups containing both files. 0 if they are never changed together.
+    public int count(int a, int b) {
+        if (!isValid(a) || !isValid(b)) {
+            return 0;
+        }
+
+        int index = Arrays.binarySearch(columns, offsets[a], offsets[a + 1], b);
+
+        return index < 0 ? 0 : counts[index];
+    }
+
+    public int count(FileName a, FileName b) {
+        return count(dictionary.getId(a), dictionary.getId(b));
+    }
+
+    private boolean isValid(int id) {
+        return id >= 0 && id < offsets.length - 1;
+    }
+
+    private List<FileName> toFiles(int[] ids) {
+        List<FileName> files = new ArrayList<>(ids.length);
+
+        for (int id : ids) {
+            files.add(dictionary.getFile(id));
+        }
+
+        return files;
+    }
+}
@@ -0,0 +1,72 @@
+package extract;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// count-min sketch of long keys. the estimated count of a key is never lower than the real count,
+// and exceeds it by at most (e / width) * (total count) with the probability of 1 - (1 / e) ^ depth.
+// counters are atomic, so one sketch can be shared by threads adding keys at once.
+public class CountMinSketch {
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private static final int DEFAULT_DEPTH = 4;
+    private static final int MIN_WIDTH = 1 << 10;
+
+    private final int depth;
+    private final int mask; // width - 1
+    private final AtomicIntegerArray counters; // depth * width
+
+    // width is rounded up to a power of two.
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        width = Math.max(2, Integer.highestOneBit(width - 1) << 1);
+
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counters = new AtomicIntegerArray(depth * width);
+    }
+
+    // a sketch whose error is expected to be under the half of the threshold after totalCount additions,
+    // unless its counters exceed maxBytes. then the widest sketch within maxBytes is made.
+    public static CountMinSketch forThreshold(long totalCount, int threshold, long maxBytes) {
+        long width = (long) Math.ceil(2 * Math.E * totalCount / Math.max(1, threshold));
+        long maxWidth = Long.highestOneBit(Math.max(MIN_WIDTH, Math.min(Integer.MAX_VALUE,
+                maxBytes / (DEFAULT_DEPTH * Integer.BYTES))));
+
+        return new CountMinSketch(DEFAULT_DEPTH, (int) Math.max(MIN_WIDTH, Math.min(maxWidth, width)));
+    }
+
+    public void add(long key) {
+        add(key, 1);
+    }
+
+    public void add(long key, int count) {
+        for (int row = 0; row < depth; row++) {
+            counters.getAndAdd(index(row, key), count);
+        }
+    }
+
+    public int estimate(long key) {
+        int estimate = Integer.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, key)));
+        }
+
+        return estimate;
+    }
+
+    private int index(int row, long key) {
+        // murmur3 finalizer with a different seed for each row
+        key += (row + 1) * 0x9e3779b97f4a7c15L;
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+
+        return row * (mask + 1) + ((int) key & mask);
+    }
+}
@@ -1,15 +1,38 @@
 package extract;
 
 import model.AccumulatedEntity;
+import model.FileDictionary;
 import model.FileName;
+import model.PairEntity;
+import model.PathDictionary;
 import model.RevisionGroup;
 
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
-public class FileRelationExtractor {
-    private final Collection<RevisionGroup> revisions;
+public class FileRelationExtractor implements Closeable {
+    private final Collection<RevisionGroup> revisions; // null if groups are added one at a time.
+    private int parallelism = 1;
+    private int maxPairsInMemory = 0;
+    private File spillDirectory = null;
+    private int minPairCount = 0;
+    private int lshBands = 0; // 0 means the exact pair counting.
+    private int lshRows = 0;
 
     private TreeSet<FileName> files = null;
+    private FileDictionary dictionary = null;
+    private RelationCounts counts = null;
+    private MinHashPairFinder finder = null; // null if every pair is counted.
+    private SpillablePairCountMap candidatePairs = null;
+
     private TreeMap<FileName, AccumulatedEntity> accumulatedEntities = null;
     private TreeMap<FileName, TreeMap<FileName, Integer>> pairEntities = null;
 
@@ -17,99 +40,496 @@ public class FileRelationExtractor {
         this.revisions = revisions;
     }
 
+    // creates an extractor whose groups are given one at a time with add().
+    // file ids are assigned in the order of appearance.
+    public FileRelationExtractor() {
+        this.revisions = null;
+        this.dictionary = new FileDictionary();
+    }
+
+    // the number of threads used to extract the relations. 1 means the sequential extraction.
+    public FileRelationExtractor setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
+    // the maximum number of pairs kept in memory by each thread. 0 means no limit.
+    // pairs exceeding the limit are sorted and written to the spill directory. (null: default temp directory)
+    public FileRelationExtractor setMaxPairsInMemory(int maxPairs, File spillDirectory) {
+        if (maxPairs < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.maxPairsInMemory = maxPairs;
+        this.spillDirectory = spillDirectory;
+
+        return this;
+    }
+
+    // pairs counted less than the given count are dropped.
+    // when the groups are given at once, a count-min sketch of the pairs is built first,
+    // and exact counters are allocated only for pairs which can reach the count.
+    // otherwise, every pair is counted and only filtered out when they are iterated.
+    public FileRelationExtractor setMinPairCount(int minPairCount) {
+        if (minPairCount < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.minPairCount = minPairCount;
+
+        return this;
+    }
+
+    // instead of counting every pair, only the pairs found by min-hash signatures of (bands * rows) values
+    // are counted, and their jaccard similarities are estimated from the signatures.
+    // a pair of similarity s is found with the probability of 1 - (1 - s ^ rows) ^ bands.
+    public FileRelationExtractor setApproximate(int bands, int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.lshBands = bands;
+        this.lshRows = rows;
+
+        return this;
+    }
+
+    // counts the given group immediately. the extractor doesn't keep any reference to the group.
+    public void add(RevisionGroup group) {
+        if (revisions != null) {
+            throw new IllegalStateException("groups can be added only to an extractor created without groups.");
+        }
+
+        getCounts().add(group);
+
+        if (finder != null) {
+            finder.addGroup(getIds(group));
+            candidatePairs = null;
+        }
+
+        files = null;
+        accumulatedEntities = null;
+        pairEntities = null;
+    }
+
+    // writes the dictionary and the counts, so that another extractor can continue with readState().
+    // pairs are written without the minimum pair count.
+    public void writeState(DataOutput output) throws IOException {
+        if (finder != null) {
+            throw new IllegalStateException("the state of the approximate extraction can't be written.");
+        }
+
+        getCounts();
+
+        output.writeInt(dictionary.size());
+
+        for (FileName file : dictionary.getFiles()) {
+            output.writeUTF(file.toString());
+        }
+
+        counts.write(output);
+    }
+
+    // restores the state written by writeState() with the file names of the dictionary.
+    // groups can be added after that with add().
+    public void readState(DataInput input, PathDictionary pathDictionary) throws IOException {
+        if (revisions != null || counts != null) {
+            throw new IllegalStateException("the state can be read only by an empty extractor created without groups.");
+        }
+
+        if (lshBands > 0) {
+            throw new IllegalStateException("the state can't be read in the approximate mode.");
+        }
+
+        int size = input.readInt();
+
+        for (int i = 0; i < size; i++) {
+            dictionary.intern(new FileName(input.readUTF(), pathDictionary));
+        }
+
+        getCounts().read(input);
+
+        files = null;
+        accumulatedEntities = null;
+        pairEntities = null;
+    }
+
     public TreeSet<FileName> getFiles() {
         if (files == null) {
-            buildFiles();
+            if (revisions == null) {
+                files = new TreeSet<>(dictionary.getFiles());
+            } else {
+                buildFiles();
+            }
         }
 
         return files;
     }
 
+    public FileDictionary getDictionary() {
+        if (dictionary == null) {
+            buildFiles();
+        }
+
+        return dictionary;
+    }
+
+    // pair counts in memory. if pairs are spilled, only the pairs after the last spill are included.
+    // pairs under the minimum pair count are not filtered out.
+    public PairCountMap getPairCounts() {
+        return getPairs();
+    }
+
+    // all pairs in the order of (from, to) file names, merged from the memory and the spilled runs.
+    public Iterator<PairEntity> getPairEntityIterator() {
+        return new PairEntityIterator(getPairCursor());
+    }
+
+    // the pairs as an immutable matrix, which can be queried after the extractor is closed.
+    public CoChangeMatrix getCoChangeMatrix() {
+        return new CoChangeMatrix(getDictionary(), getPairCursor());
+    }
+
     public TreeMap<FileName, AccumulatedEntity> getAccumulatedEntities() {
         if (accumulatedEntities == null) {
-            buildRelations();
+            getCounts();
+
+            accumulatedEntities = new TreeMap<>();
+
+            for (int id = 0; id < dictionary.size(); id++) {
+                AccumulatedEntity entity = counts.getAccumulatedEntity(id);
+                accumulatedEntities.put(dictionary.getFile(id), entity == null ? new AccumulatedEntity() : entity);
+            }
         }
 
         return accumulatedEntities;
     }
 
+    // the pair counts are kept in a primitive map while extracting,
+    // so the tree view is only built when it's requested.
     public TreeMap<FileName, TreeMap<FileName, Integer>> getPairEntities() {
         if (pairEntities == null) {
-            buildRelations();
+            Iterator<PairEntity> iterator = getPairEntityIterator();
+
+            pairEntities = new TreeMap<>();
+
+            for (FileName file : dictionary.getFiles()) {
+                pairEntities.put(file, new TreeMap<>());
+            }
+
+            // K: the greater file name, V: the smaller file name
+            while (iterator.hasNext()) {
+                PairEntity pair = iterator.next();
+                pairEntities.get(pair.getFrom()).put(pair.getTo(), pair.getCount());
+            }
         }
 
         return pairEntities;
     }
 
+    // deletes the spilled pairs.
+    @Override
+    public void close() {
+        if (counts != null) {
+            counts.getPairCounts().close();
+        }
+
+        if (candidatePairs != null) {
+            candidatePairs.close();
+        }
+    }
+
+    private SpillablePairCountMap getPairs() {
+        getCounts();
+
+        if (finder == null) {
+            return counts.getPairCounts();
+        }
+
+        if (candidatePairs == null) {
+            candidatePairs = finder.find();
+        }
+
+        return candidatePairs;
+    }
+
+    // pairs whose count reaches the minimum pair count.
+    private PairCursor getPairCursor() {
+        PairCursor pairs = getPairs().cursor();
+
+        return new PairCursor() {
+            @Override
+            public boolean next() {
+                while (pairs.next()) {
+                    if (pairs.count >= minPairCount) {
+                        from = pairs.from;
+                        to = pairs.to;
+                        count = pairs.count;
+
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+        };
+    }
+
+    private int[] getIds(RevisionGroup revision) {
+        int[] ids = revision.getFileIds();
+        FileDictionary storeFiles = revision.getStore().getFileDictionary();
+
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.getId(storeFiles.getFile(ids[i]));
+        }
+
+        return ids;
+    }
+
+    private RelationCounts getCounts() {
+        if (counts == null) {
+            if (revisions == null) {
+                counts = newCounts();
+                finder = newFinder();
+            } else {
+                buildRelations();
+            }
+        }
+
+        return counts;
+    }
+
+    private RelationCounts newCounts() {
+        RelationCounts partial = new RelationCounts(dictionary, maxPairsInMemory, spillDirectory);
+
+        partial.setCountPairs(lshBands == 0);
+
+        return partial;
+    }
+
+    private MinHashPairFinder newFinder() {
+        return lshBands > 0 ? new MinHashPairFinder(dictionary, lshBands, lshRows) : null;
+    }
+
     private void buildFiles() {
         files = new TreeSet<>();
 
         for (RevisionGroup revision : revisions) {
-            files.addAll(revision.getFiles());
+            FileDictionary storeFiles = revision.getStore().getFileDictionary();
+
+            for (int id : revision.getFileIds()) {
+                files.add(storeFiles.getFile(id));
+            }
+        }
+
+        // ids are assigned in the order of the file names.
+        dictionary = new FileDictionary();
+
+        for (FileName file : files) {
+            dictionary.intern(file);
         }
     }
 
     private void buildRelations() {
         // initialize fields
-        if (files == null) {
+        if (dictionary == null) {
             buildFiles();
         }
 
-        accumulatedEntities = new TreeMap<>();
-        pairEntities = new TreeMap<>();
+        CountMinSketch candidates = null;
 
-        for (FileName file : files) {
-            accumulatedEntities.put(file, new AccumulatedEntity());
-            pairEntities.put(file, new TreeMap<>());
+        // the first pass estimates the count of every pair,
+        // so that the second pass allocates exact counters only for pairs which may reach the minimum count.
+        if (minPairCount > 1 && lshBands == 0) {
+            long pairOccurrences = 0;
+
+            for (RevisionGroup revision : revisions) {
+                long size = revision.getFiles().size();
+                pairOccurrences += size * (size - 1) / 2;
+            }
+
+            // one sketch is shared by the threads, and takes no more memory than the pairs counted in memory.
+            // (a pair takes a long key and an int count)
+            long maxBytes = maxPairsInMemory > 0
+                    ? (long) maxPairsInMemory * parallelism * (Long.BYTES + Integer.BYTES)
+                    : CountMinSketch.DEFAULT_MAX_BYTES;
+            CountMinSketch sketch = CountMinSketch.forThreshold(pairOccurrences, minPairCount, maxBytes);
+            candidates = collect(() -> sketch, this::addPairs, (x, y) -> { });
         }
 
-        // extract file relations
-        for (RevisionGroup revision : revisions) {
-            SortedSet<FileName> revisionFiles = revision.getFiles();
-            Map<String, Integer> packageCount = countFilesInPackage(revisionFiles);
+        CountMinSketch finalCandidates = candidates;
+        counts = collect(() -> {
+            RelationCounts partial = newCounts();
+            partial.setCandidates(finalCandidates, minPairCount);
+            return partial;
+        }, RelationCounts::add, RelationCounts::addAll);
 
-            for (FileName file : revisionFiles) {
-                // build accumulated data
-                AccumulatedEntity accumulatedEntity = accumulatedEntities.get(file);
+        // signatures are built from the groups in the order of the collection, which is kept sequential.
+        finder = newFinder();
 
-                int same = packageCount.get(file.getParent()) - 1;
-                int other = revisionFiles.size() - (same + 1);
+        if (finder != null) {
+            for (RevisionGroup revision : revisions) {
+                finder.addGroup(getIds(revision));
+            }
+        }
+    }
 
-                accumulatedEntity.addCount(revision.getHeadTime(), same, other);
+    private void addPairs(CountMinSketch sketch, RevisionGroup revision) {
+        int[] ids = getIds(revision);
 
-                // update pair count
-                TreeMap<FileName, Integer> filePairs = pairEntities.get(file);
-                for (FileName otherFile : revisionFiles) {
-                    if (file.compareTo(otherFile) <= 0) {
-                        continue;
-                    }
+        for (int i = 0; i < ids.length; i++) {
+            for (int j = i + 1; j < ids.length; j++) {
+                sketch.add(PairCountMap.pack(ids[i], ids[j]));
+            }
+        }
+    }
 
-                    if (!filePairs.containsKey(otherFile)) {
-                        filePairs.put(otherFile, 0);
-                    }
+    // pair entities of the cursor with their metrics.
+    // pairs are read in blocks, and the metrics of a block are computed in one loop over primitive arrays.
+    private class PairEntityIterator implements Iterator<PairEntity> {
+        private static final int BLOCK_SIZE = 4096;
+
+        private final PairCursor cursor;
+        private final int[] groupCounts = counts.getGroupCounts();
+        private final double totalGroupCount = counts.getTotalGroupCount();
+
+        private final int[] froms = new int[BLOCK_SIZE], tos = new int[BLOCK_SIZE], pairCounts = new int[BLOCK_SIZE];
+        private final double[] supports = new double[BLOCK_SIZE];
+        private final double[] confidences = new double[BLOCK_SIZE], reverseConfidences = new double[BLOCK_SIZE];
+        private final double[] lifts = new double[BLOCK_SIZE], jaccards = new double[BLOCK_SIZE];
+        private int size = 0, index = 0;
+        private boolean exhausted = false;
+
+        PairEntityIterator(PairCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index == size && !exhausted) {
+                readBlock();
+            }
+
+            return index < size;
+        }
+
+        @Override
+        public PairEntity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            int i = index++;
+
+            return new PairEntity(dictionary.getFile(froms[i]), dictionary.getFile(tos[i]), pairCounts[i],
+                    supports[i], confidences[i], reverseConfidences[i], lifts[i], jaccards[i]);
+        }
+
+        private void readBlock() {
+            size = 0;
+            index = 0;
+
+            while (size < BLOCK_SIZE && cursor.next()) {
+                froms[size] = cursor.from;
+                tos[size] = cursor.to;
+                pairCounts[size] = cursor.count;
+                size++;
+            }
+
+            exhausted = size < BLOCK_SIZE;
+
+            for (int i = 0; i < size; i++) {
+                double count = pairCounts[i];
+                double fromCount = groupCounts[froms[i]];
+                double toCount = groupCounts[tos[i]];
 
-                    filePairs.put(otherFile, filePairs.get(otherFile) + 1);
+                supports[i] = count / totalGroupCount;
+                confidences[i] = count / fromCount;
+                reverseConfidences[i] = count / toCount;
+                lifts[i] = count * totalGroupCount / (fromCount * toCount);
+                jaccards[i] = count / (fromCount + toCount - count);
+            }
+
+            // the similarity estimated from the signatures is kept in the approximate mode.
+            if (finder != null) {
+                for (int i = 0; i < size; i++) {
+                    jaccards[i] = finder.getSimilarity(froms[i], tos[i]);
                 }
             }
         }
     }
 
-    // count the number of files in the packages
-    // K: name of package
-    // V: number of files in K
-    private Map<String, Integer> countFilesInPackage(Collection<FileName> files) {
-        Map<String, Integer> packageCount = new TreeMap<>();
+    // folds every group into a result, with the fork/join pool if the parallelism is greater than 1.
+    private <T> T collect(Supplier<T> supplier, BiConsumer<T, RevisionGroup> accumulator, BiConsumer<T, T> combiner) {
+        if (parallelism <= 1) {
+            T result = supplier.get();
 
-        for (FileName file : files) {
-            String packageName = file.getParent();
-
-            if (!packageCount.containsKey(packageName)) {
-                packageCount.put(packageName, 0);
+            for (RevisionGroup revision : revisions) {
+                accumulator.accept(result, revision);
             }
 
-            packageCount.put(packageName, packageCount.get(packageName) + 1);
+            return result;
+        }
+
+        List<RevisionGroup> groups = new ArrayList<>(revisions);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        int threshold = Math.max(1, groups.size() / (parallelism * 4));
+
+        try {
+            return pool.invoke(new CollectTask<>(groups, 0, groups.size(), threshold, supplier, accumulator, combiner));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // folds groups[from, to) by splitting the range until it's smaller than the threshold.
+    // the dictionary is only read by the tasks, and the partial results are summed up,
+    // so the result is the same as the sequential one.
+    private static class CollectTask<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<RevisionGroup> groups;
+        private final int from, to, threshold;
+        private final Supplier<T> supplier;
+        private final BiConsumer<T, RevisionGroup> accumulator;
+        private final BiConsumer<T, T> combiner;
+
+        CollectTask(List<RevisionGroup> groups, int from, int to, int threshold,
+                    Supplier<T> supplier, BiConsumer<T, RevisionGroup> accumulator, BiConsumer<T, T> combiner) {
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
         }
 
-        return packageCount;
+        @Override
+        protected T compute() {
+            if (to - from <= threshold) {
+                T result = supplier.get();
+
+                for (int i = from; i < to; i++) {
+                    accumulator.accept(result, groups.get(i));
+                }
+
+                return result;
+            }
+
+            int middle = (from + to) >>> 1;
+            CollectTask<T> left = new CollectTask<>(groups, from, middle, threshold, supplier, accumulator, combiner);
+            left.fork();
+
+            T result = new CollectTask<>(groups, middle, to, threshold, supplier, accumulator, combiner).compute();
+            combiner.accept(result, left.join());
+
+            return result;
+        }
     }
 }
@@ -0,0 +1,202 @@
+package extract;
+
+import model.FileDictionary;
+import utils.SortUtil;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// finds pairs of files which are likely to be changed together without counting every pair.
+// each file gets a min-hash signature over the groups containing it, and files whose signatures are
+// the same in any band become candidates (locality sensitive hashing).
+// only the candidates are counted exactly, by intersecting the groups of the two files.
+public class MinHashPairFinder {
+    private static final long SEED = 0x5eed5eed5eedL;
+
+    private final FileDictionary dictionary;
+    private final int bands, rows;
+    private final int[] hashSeeds;
+
+    // file ids of every group, in the order of addition.
+    private int[] groupFiles = new int[1024];
+    private int[] groupOffsets = new int[256];
+    private int groupCount = 0;
+
+    private PairCountMap matches = null; // K: candidate pair, V: number of same signature values.
+
+    public MinHashPairFinder(FileDictionary dictionary, int bands, int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.dictionary = dictionary;
+        this.bands = bands;
+        this.rows = rows;
+
+        Random random = new Random(SEED);
+        hashSeeds = new int[bands * rows];
+
+        for (int i = 0; i < hashSeeds.length; i++) {
+            hashSeeds[i] = random.nextInt();
+        }
+    }
+
+    public void addGroup(int[] fileIds) {
+        int offset = groupOffsets[groupCount];
+
+        if (offset + fileIds.length > groupFiles.length) {
+            groupFiles = Arrays.copyOf(groupFiles, Math.max(offset + fileIds.length, groupFiles.length << 1));
+        }
+
+        if (groupCount + 2 > groupOffsets.length) {
+            groupOffsets = Arrays.copyOf(groupOffsets, groupOffsets.length << 1);
+        }
+
+        System.arraycopy(fileIds, 0, groupFiles, offset, fileIds.length);
+        groupCount++;
+        groupOffsets[groupCount] = offset + fileIds.length;
+        matches = null;
+    }
+
+    // exact counts of the candidate pairs.
+    public SpillablePairCountMap find() {
+        int fileCount = dictionary.size();
+
+        // K: file id, V: indices of the groups containing the file, in ascending order.
+        int[] postingOffsets = new int[fileCount + 1];
+        int[] postings = new int[groupOffsets[groupCount]];
+
+        for (int i = 0; i < groupOffsets[groupCount]; i++) {
+            postingOffsets[groupFiles[i] + 1]++;
+        }
+
+        for (int id = 0; id < fileCount; id++) {
+            postingOffsets[id + 1] += postingOffsets[id];
+        }
+
+        int[] position = Arrays.copyOf(postingOffsets, fileCount);
+
+        for (int group = 0; group < groupCount; group++) {
+            for (int i = groupOffsets[group]; i < groupOffsets[group + 1]; i++) {
+                postings[position[groupFiles[i]]++] = group;
+            }
+        }
+
+        // build signatures
+        int length = bands * rows;
+        int[] signatures = new int[fileCount * length];
+        Arrays.fill(signatures, Integer.MAX_VALUE);
+
+        for (int id = 0; id < fileCount; id++) {
+            for (int i = postingOffsets[id]; i < postingOffsets[id + 1]; i++) {
+                for (int h = 0; h < length; h++) {
+                    signatures[id * length + h] = Math.min(signatures[id * length + h], hash(hashSeeds[h], postings[i]));
+                }
+            }
+        }
+
+        // files of the same band signature become candidates.
+        matches = new PairCountMap();
+        long[] keys = new long[fileCount];
+
+        for (int band = 0; band < bands; band++) {
+            for (int id = 0; id < fileCount; id++) {
+                long key = band;
+
+                for (int row = 0; row < rows; row++) {
+                    key = key * 0x100000001b3L + signatures[id * length + band * rows + row];
+                }
+
+                keys[id] = key;
+            }
+
+            int[] order = SortUtil.sortedIndices(keys, fileCount);
+            int start = 0;
+
+            for (int end = 1; end <= fileCount; end++) {
+                if (end < fileCount && keys[order[end]] == keys[order[start]]) {
+                    continue;
+                }
+
+                for (int i = start; i < end; i++) {
+                    // files without groups have the same empty signature.
+                    if (postingOffsets[order[i]] == postingOffsets[order[i] + 1]) {
+                        continue;
+                    }
+
+                    for (int j = i + 1; j < end; j++) {
+                        long pair = PairCountMap.pack(order[i], order[j]);
+
+                        if (matches.get(pair) == 0) {
+                            matches.add(pair, countMatches(signatures, length, order[i], order[j]));
+                        }
+                    }
+                }
+
+                start = end;
+            }
+        }
+
+        // count the candidates exactly
+        SpillablePairCountMap counts = new SpillablePairCountMap(dictionary, 0, null);
+
+        matches.forEach((pair, match) -> {
+            int count = countIntersection(postings,
+                    postingOffsets[PairCountMap.high(pair)], postingOffsets[PairCountMap.high(pair) + 1],
+                    postingOffsets[PairCountMap.low(pair)], postingOffsets[PairCountMap.low(pair) + 1]);
+
+            if (count > 0) {
+                counts.add(pair, count);
+            }
+        });
+
+        return counts;
+    }
+
+    // the estimated jaccard similarity of the given candidate pair. find() should be called first.
+    public double getSimilarity(int a, int b) {
+        return (double) matches.get(a, b) / (bands * rows);
+    }
+
+    private static int countMatches(int[] signatures, int length, int a, int b) {
+        int count = 0;
+
+        for (int h = 0; h < length; h++) {
+            if (signatures[a * length + h] == signatures[b * length + h]) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // the number of common values of two sorted ranges.
+    private static int countIntersection(int[] values, int i, int iEnd, int j, int jEnd) {
+        int count = 0;
+
+        while (i < iEnd && j < jEnd) {
+            if (values[i] < values[j]) {
+                i++;
+            } else if (values[i] > values[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+
+        return count;
+    }
+
+    private static int hash(int seed, int value) {
+        int h = value * 0x9e3779b1 + seed;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+
+        return h;
+    }
+}
@@ -0,0 +1,146 @@
+package extract;
+
+import java.util.Arrays;
+
+// open addressing hash map from a file id pair to its count.
+// a pair (a, b) is packed into a single long key as (max(a, b) << 32 | min(a, b)),
+// so that the order of the ids doesn't matter and no boxing is required.
+public class PairCountMap {
+    private static final long EMPTY = -1L;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] counts;
+    private int size = 0;
+    private int threshold;
+
+    public PairCountMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PairCountMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public static long pack(int a, int b) {
+        if (a < b) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    // the larger id of the packed pair.
+    public static int high(long key) {
+        return (int) (key >>> 32);
+    }
+
+    // the smaller id of the packed pair.
+    public static int low(long key) {
+        return (int) key;
+    }
+
+    public void increment(int a, int b) {
+        add(pack(a, b), 1);
+    }
+
+    public void add(long key, int count) {
+        int slot = findSlot(key);
+
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            counts[slot] = count;
+            size++;
+
+            if (size > threshold) {
+                resize(keys.length << 1);
+            }
+        } else {
+            counts[slot] += count;
+        }
+    }
+
+    public int get(int a, int b) {
+        return get(pack(a, b));
+    }
+
+    public int get(long key) {
+        int slot = findSlot(key);
+
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(PairVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.visit(keys[i], counts[i]);
+            }
+        }
+    }
+
+    // add all counts of the given map into this map.
+    public void addAll(PairCountMap other) {
+        other.forEach(this::add);
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new int[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private static int hash(long key) {
+        // murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+
+    public interface PairVisitor {
+        void visit(long key, int count);
+    }
+}
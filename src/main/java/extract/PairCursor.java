@@ -0,0 +1,22 @@
+package extract;
+
+// a sequence of file id pairs in the order of (from, to) file names.
+// from is the id of the greater file name, and to is the id of the smaller one.
+public abstract class PairCursor {
+    int from, to, count;
+
+    // moves to the next pair. returns false if there are no more pairs.
+    public abstract boolean next();
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,269 @@
+package extract;
+
+import model.AccumulatedEntity;
+import model.CountEntity;
+import model.FileDictionary;
+import model.FileName;
+import model.RevisionGroup;
+import model.RevisionStore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// accumulated and pair counts of a part of the revision groups.
+// partial counts built from different groups can be merged with addAll.
+class RelationCounts {
+    private final FileDictionary dictionary;
+    private AccumulatedEntity[] accumulated; // indexed by file id, null if not touched.
+    private int[] groupCounts; // K: file id, V: number of groups containing the file.
+    private int totalGroupCount = 0;
+    private final SpillablePairCountMap pairCounts;
+    private boolean countPairs = true;
+
+    // K: file id of the store, V: file id of the dictionary, -1 if not known yet.
+    private RevisionStore translatedStore = null;
+    private int[] translation = new int[0];
+
+    // if given, only pairs whose estimated count reaches minPairCount are counted.
+    private CountMinSketch candidates = null;
+    private int minPairCount = 0;
+
+    RelationCounts(FileDictionary dictionary, int maxPairs, File spillDirectory) {
+        this.dictionary = dictionary;
+        this.pairCounts = new SpillablePairCountMap(dictionary, maxPairs, spillDirectory);
+        this.accumulated = new AccumulatedEntity[Math.max(16, dictionary.size())];
+        this.groupCounts = new int[accumulated.length];
+    }
+
+    // if false, only accumulated counts and group counts are counted.
+    void setCountPairs(boolean countPairs) {
+        this.countPairs = countPairs;
+    }
+
+    void setCandidates(CountMinSketch candidates, int minPairCount) {
+        this.candidates = candidates;
+        this.minPairCount = minPairCount;
+    }
+
+    // returns null if the file of the given id is not counted.
+    AccumulatedEntity getAccumulatedEntity(int id) {
+        return id < accumulated.length ? accumulated[id] : null;
+    }
+
+    // K: file id, V: number of groups containing the file. the array may be longer than the dictionary.
+    int[] getGroupCounts() {
+        return groupCounts;
+    }
+
+    int getTotalGroupCount() {
+        return totalGroupCount;
+    }
+
+    SpillablePairCountMap getPairCounts() {
+        return pairCounts;
+    }
+
+    // unknown files are added to the dictionary.
+    // if every file of the group is already in the dictionary, the dictionary is only read.
+    void add(RevisionGroup revision) {
+        int[] ids = translate(revision);
+        int[] packageCount = countFilesInPackage(ids);
+
+        for (int index = 0; index < ids.length; index++) {
+            // build accumulated data
+            int same = packageCount[index] - 1;
+            int other = ids.length - (same + 1);
+
+            getOrCreate(ids[index]).addCount(revision.getHeadTime(), same, other);
+            groupCounts[ids[index]]++;
+        }
+
+        totalGroupCount++;
+
+        if (!countPairs) {
+            return;
+        }
+
+        // update pair count
+        for (int i = 0; i < ids.length; i++) {
+            for (int j = i + 1; j < ids.length; j++) {
+                long key = PairCountMap.pack(ids[i], ids[j]);
+
+                if (candidates == null || candidates.estimate(key) >= minPairCount) {
+                    pairCounts.add(key, 1);
+                }
+            }
+        }
+    }
+
+    void addAll(RelationCounts counts) {
+        ensureCapacity(counts.accumulated.length);
+
+        for (int id = 0; id < counts.accumulated.length; id++) {
+            if (counts.accumulated[id] == null) {
+                continue;
+            }
+
+            if (accumulated[id] == null) {
+                accumulated[id] = counts.accumulated[id];
+            } else {
+                accumulated[id].addAll(counts.accumulated[id]);
+            }
+
+            groupCounts[id] += counts.groupCounts[id];
+        }
+
+        totalGroupCount += counts.totalGroupCount;
+        pairCounts.addAll(counts.pairCounts);
+    }
+
+    // writes the counts of every file in the dictionary and all pairs, including the spilled ones.
+    // accumulated counts are written as deltas of the distinct times.
+    void write(DataOutput output) throws IOException {
+        output.writeInt(totalGroupCount);
+
+        for (int id = 0; id < dictionary.size(); id++) {
+            AccumulatedEntity entity = getAccumulatedEntity(id);
+            Map<Long, CountEntity> entityCounts = entity == null ? new TreeMap<>() : entity.getCounts();
+            int same = 0, other = 0;
+
+            output.writeInt(id < groupCounts.length ? groupCounts[id] : 0);
+            output.writeInt(entityCounts.size());
+
+            for (Map.Entry<Long, CountEntity> entry : entityCounts.entrySet()) {
+                output.writeLong(entry.getKey());
+                output.writeInt(entry.getValue().getSameCount() - same);
+                output.writeInt(entry.getValue().getOtherCount() - other);
+                same = entry.getValue().getSameCount();
+                other = entry.getValue().getOtherCount();
+            }
+        }
+
+        PairCursor pairs = pairCounts.cursor();
+
+        while (pairs.next()) {
+            output.writeInt(pairs.from);
+            output.writeInt(pairs.to);
+            output.writeInt(pairs.count);
+        }
+
+        output.writeInt(-1);
+    }
+
+    // adds the counts written by write(). the dictionary should be restored first.
+    void read(DataInput input) throws IOException {
+        totalGroupCount += input.readInt();
+
+        for (int id = 0; id < dictionary.size(); id++) {
+            int groupCount = input.readInt();
+            int size = input.readInt();
+
+            if (groupCount == 0 && size == 0) {
+                continue;
+            }
+
+            AccumulatedEntity entity = getOrCreate(id);
+            groupCounts[id] += groupCount;
+
+            for (int i = 0; i < size; i++) {
+                entity.addCount(input.readLong(), input.readInt(), input.readInt());
+            }
+        }
+
+        for (int from = input.readInt(); from >= 0; from = input.readInt()) {
+            int to = input.readInt();
+            pairCounts.add(PairCountMap.pack(from, to), input.readInt());
+        }
+    }
+
+    // ids of the files of the group in the dictionary.
+    // groups of the same store are translated through a cache, without looking up the file names again.
+    private int[] translate(RevisionGroup revision) {
+        int[] ids = revision.getFileIds();
+        FileDictionary storeFiles = revision.getStore().getFileDictionary();
+
+        if (revision.getStore() != translatedStore) {
+            translatedStore = revision.getStore();
+            translation = new int[0];
+        }
+
+        if (translation.length < storeFiles.size()) {
+            int length = translation.length;
+            translation = Arrays.copyOf(translation, Math.max(storeFiles.size(), length << 1));
+            Arrays.fill(translation, length, translation.length, -1);
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            int id = translation[ids[i]];
+
+            if (id < 0) {
+                FileName file = storeFiles.getFile(ids[i]);
+                id = dictionary.getId(file);
+
+                if (id < 0) {
+                    id = dictionary.intern(file);
+                }
+
+                translation[ids[i]] = id;
+            }
+
+            ids[i] = id;
+        }
+
+        return ids;
+    }
+
+    private AccumulatedEntity getOrCreate(int id) {
+        ensureCapacity(id + 1);
+
+        if (accumulated[id] == null) {
+            accumulated[id] = new AccumulatedEntity();
+        }
+
+        return accumulated[id];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > accumulated.length) {
+            capacity = Math.max(capacity, accumulated.length << 1);
+            accumulated = Arrays.copyOf(accumulated, capacity);
+            groupCounts = Arrays.copyOf(groupCounts, capacity);
+        }
+    }
+
+    // count the number of files in the packages
+    // K: index of the file
+    // V: number of files in the package of K
+    private int[] countFilesInPackage(int[] ids) {
+        int[] packages = new int[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            packages[i] = dictionary.getFile(ids[i]).getParentId();
+        }
+
+        int[] sorted = packages.clone();
+        int[] runs = new int[sorted.length]; // K: index in sorted, V: number of the same package ids
+        Arrays.sort(sorted);
+
+        for (int start = 0, end = 0; start < sorted.length; start = end) {
+            while (end < sorted.length && sorted[end] == sorted[start]) {
+                end++;
+            }
+
+            Arrays.fill(runs, start, end, end - start);
+        }
+
+        int[] packageCount = new int[packages.length];
+
+        for (int i = 0; i < packages.length; i++) {
+            packageCount[i] = runs[Arrays.binarySearch(sorted, packages[i])];
+        }
+
+        return packageCount;
+    }
+}
@@ -0,0 +1,264 @@
+package extract;
+
+import model.FileDictionary;
+import utils.SortUtil;
+
+import java.io.*;
+import java.util.*;
+
+// pair count map which keeps at most maxPairs pairs in memory.
+// when the limit is exceeded, the pairs are sorted and written to a run file in the spill directory,
+// and all runs are merged while the pairs are iterated.
+public class SpillablePairCountMap extends PairCountMap implements Closeable {
+    private static final int MAX_RUNS = 64;
+
+    private final FileDictionary dictionary;
+    private final int maxPairs; // 0 means no limit.
+    private final File spillDirectory; // null means the default temp directory.
+    private final List<File> runs = new ArrayList<>();
+
+    public SpillablePairCountMap(FileDictionary dictionary, int maxPairs, File spillDirectory) {
+        if (maxPairs < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.dictionary = dictionary;
+        this.maxPairs = maxPairs;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public void add(long key, int count) {
+        super.add(key, count);
+
+        if (maxPairs > 0 && size() > maxPairs) {
+            spill();
+        }
+    }
+
+    // the runs of the given map are moved to this map.
+    @Override
+    public void addAll(PairCountMap other) {
+        super.addAll(other);
+
+        if (other instanceof SpillablePairCountMap) {
+            runs.addAll(((SpillablePairCountMap) other).runs);
+            ((SpillablePairCountMap) other).runs.clear();
+            compactRuns();
+        }
+    }
+
+    // returns all pairs in the order of (from, to) file names. equal pairs of different runs are summed up.
+    public PairCursor cursor() {
+        int[] ranks = dictionary.getRanks();
+        List<PairCursor> sources = new ArrayList<>();
+
+        sources.add(new MemoryRun(ranks));
+
+        for (File file : runs) {
+            sources.add(new FileRun(file));
+        }
+
+        return new MergedRun(sources, ranks);
+    }
+
+    // deletes the run files.
+    @Override
+    public void close() {
+        for (File file : runs) {
+            file.delete();
+        }
+
+        runs.clear();
+    }
+
+    private void spill() {
+        runs.add(writeRun(new MemoryRun(dictionary.getRanks())));
+        clear();
+        compactRuns();
+    }
+
+    // merge the runs into one to limit the number of files opened at once.
+    private void compactRuns() {
+        if (runs.size() >= MAX_RUNS) {
+            int[] ranks = dictionary.getRanks();
+            List<PairCursor> sources = new ArrayList<>();
+
+            for (File file : runs) {
+                sources.add(new FileRun(file));
+            }
+
+            File merged = writeRun(new MergedRun(sources, ranks));
+            close();
+            runs.add(merged);
+        }
+    }
+
+    private File writeRun(PairCursor run) {
+        try {
+            File file = File.createTempFile("pairs", ".run", spillDirectory);
+            file.deleteOnExit();
+
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+            while (run.next()) {
+                output.writeInt(run.from);
+                output.writeInt(run.to);
+                output.writeInt(run.count);
+            }
+
+            output.close();
+
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write pairs to the spill directory.", e);
+        }
+    }
+
+    // the pairs in memory, sorted by the given ranks.
+    private class MemoryRun extends PairCursor {
+        private final int[] froms, tos, counts;
+        private int index = -1;
+
+        MemoryRun(int[] ranks) {
+            int size = size();
+            long[] keys = new long[size];
+            int[] highs = new int[size], lows = new int[size], values = new int[size];
+            int[] position = {0};
+
+            forEach((key, count) -> {
+                int high = high(key);
+                int low = low(key);
+
+                // from: the greater file name, to: the smaller file name
+                if (ranks[high] < ranks[low]) {
+                    int temp = high;
+                    high = low;
+                    low = temp;
+                }
+
+                keys[position[0]] = ((long) ranks[high] << 32) | ranks[low];
+                highs[position[0]] = high;
+                lows[position[0]] = low;
+                values[position[0]] = count;
+                position[0]++;
+            });
+
+            int[] order = SortUtil.sortedIndices(keys, size);
+            froms = new int[size];
+            tos = new int[size];
+            counts = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                froms[i] = highs[order[i]];
+                tos[i] = lows[order[i]];
+                counts[i] = values[order[i]];
+            }
+        }
+
+        @Override
+        public boolean next() {
+            if (++index >= froms.length) {
+                return false;
+            }
+
+            from = froms[index];
+            to = tos[index];
+            count = counts[index];
+
+            return true;
+        }
+    }
+
+    // the pairs written by writeRun().
+    private static class FileRun extends PairCursor {
+        private final DataInputStream input;
+        private boolean closed = false;
+
+        FileRun(File file) {
+            try {
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't read the spilled pairs.", e);
+            }
+        }
+
+        @Override
+        public boolean next() {
+            if (closed) {
+                return false;
+            }
+
+            try {
+                from = input.readInt();
+                to = input.readInt();
+                count = input.readInt();
+
+                return true;
+            } catch (EOFException e) {
+                close();
+
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't read the spilled pairs.", e);
+            }
+        }
+
+        private void close() {
+            closed = true;
+
+            try {
+                input.close();
+            } catch (IOException ignored) {
+
+            }
+        }
+    }
+
+    // k-way merge of the given runs. equal pairs are summed up.
+    private static class MergedRun extends PairCursor {
+        private final PriorityQueue<PairCursor> queue;
+
+        MergedRun(List<PairCursor> sources, int[] ranks) {
+            queue = new PriorityQueue<>(Math.max(1, sources.size()), (o1, o2) -> {
+                int compare = Integer.compare(ranks[o1.from], ranks[o2.from]);
+
+                return compare != 0 ? compare : Integer.compare(ranks[o1.to], ranks[o2.to]);
+            });
+
+            for (PairCursor source : sources) {
+                if (source.next()) {
+                    queue.add(source);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() {
+            if (queue.isEmpty()) {
+                return false;
+            }
+
+            PairCursor run = queue.poll();
+            from = run.from;
+            to = run.to;
+            count = 0;
+
+            while (true) {
+                count += run.count;
+
+                if (run.next()) {
+                    queue.add(run);
+                }
+
+                if (queue.isEmpty() || queue.peek().from != from || queue.peek().to != to) {
+                    break;
+                }
+
+                run = queue.poll();
+            }
+
+            return true;
+        }
+    }
+}
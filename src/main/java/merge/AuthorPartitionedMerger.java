@@ -0,0 +1,140 @@
+package merge;
+
+import model.RevisionGroup;
+import model.RevisionStore;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// merges the revisions of each author separately with the given merger,
+// so revisions of other authors between them don't cut the groups.
+// partitions are merged in parallel if the parallelism is greater than 1,
+// and groups of all partitions are returned in the order of head time, with new group ids.
+public class AuthorPartitionedMerger implements RevisionMerger {
+    private final RevisionMerger merger;
+    private RevisionStore revisions = new RevisionStore();
+    private int parallelism = 1;
+
+    public AuthorPartitionedMerger(RevisionMerger merger) {
+        this.merger = merger;
+    }
+
+    public AuthorPartitionedMerger setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
+    @Override
+    public Set<RevisionGroup> merge() {
+        Set<RevisionGroup> result = new TreeSet<>();
+
+        spliterator(revisions, revisions.getTimeOrder()).forEachRemaining(result::add);
+
+        return result;
+    }
+
+    @Override
+    public Spliterator<RevisionGroup> spliterator() {
+        Spliterator<RevisionGroup> spliterator = spliterator(revisions, revisions.getTimeOrder());
+        revisions = new RevisionStore();
+
+        return spliterator;
+    }
+
+    // partitions are merged lazily if sequential. otherwise the groups of each partition are made at once.
+    @Override
+    public Spliterator<RevisionGroup> spliterator(RevisionStore store, int[] order) {
+        List<int[]> partitions = partition(store, order);
+        List<Iterator<RevisionGroup>> iterators = new ArrayList<>();
+
+        if (parallelism <= 1 || partitions.size() < 2) {
+            for (int[] partition : partitions) {
+                iterators.add(merger.iterator(store, partition));
+            }
+
+            return Spliterators.spliteratorUnknownSize(new MergingGroupIterator(iterators), CHARACTERISTICS);
+        }
+
+        List<Callable<List<RevisionGroup>>> tasks = new ArrayList<>();
+
+        for (int[] partition : partitions) {
+            tasks.add(() -> {
+                List<RevisionGroup> groups = new ArrayList<>();
+                merger.iterator(store, partition).forEachRemaining(groups::add);
+
+                return groups;
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            for (Future<List<RevisionGroup>> future : pool.invokeAll(tasks)) {
+                iterators.add(future.get().iterator());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Merging is interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        return Spliterators.spliteratorUnknownSize(new MergingGroupIterator(iterators), CHARACTERISTICS);
+    }
+
+    @Override
+    public void setRevisions(RevisionStore revisions) {
+        this.revisions = revisions;
+    }
+
+    // splits the order by the authors, keeping the order of time in each partition.
+    private static List<int[]> partition(RevisionStore store, int[] order) {
+        int authorCount = 0;
+
+        for (int index : order) {
+            authorCount = Math.max(authorCount, store.getAuthorId(index) + 1);
+        }
+
+        int[] sizes = new int[authorCount];
+
+        for (int index : order) {
+            sizes[store.getAuthorId(index)]++;
+        }
+
+        int[][] partitions = new int[authorCount][];
+
+        for (int author = 0; author < authorCount; author++) {
+            partitions[author] = new int[sizes[author]];
+            sizes[author] = 0;
+        }
+
+        for (int index : order) {
+            int author = store.getAuthorId(index);
+            partitions[author][sizes[author]++] = index;
+        }
+
+        List<int[]> result = new ArrayList<>();
+
+        for (int[] partition : partitions) {
+            if (partition.length > 0) {
+                result.add(partition);
+            }
+        }
+
+        return result;
+    }
+}
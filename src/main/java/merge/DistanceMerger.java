@@ -1,19 +1,13 @@
 package merge;
 
-import model.Revision;
 import model.RevisionGroup;
+import model.RevisionStore;
 
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.*;
 
 public class DistanceMerger implements RevisionMerger {
-    private final TreeSet<Revision> revisions;
+    private RevisionStore revisions = new RevisionStore();
     private long windowSizeInSecond = 60;
-    public DistanceMerger() {
-        this.revisions = new TreeSet<>((Comparator<Revision>) (o1, o2) -> Long.compare(o1.getTime(), o2.getTime()));
-    }
 
     public DistanceMerger setWindowSizeInSecond(long size) {
         if (size < 0) {
@@ -26,38 +20,70 @@ public class DistanceMerger implements RevisionMerger {
     }
     @Override
     public Set<RevisionGroup> merge() {
-        Revision[] revisionArray = revisions.toArray(new Revision[revisions.size()]);
         Set<RevisionGroup> result = new TreeSet<>();
-        long milliSecondWindowSize = windowSizeInSecond * 1000;
 
-        int headIndex = 0;
-        long groupId = 0;
-        while (headIndex < revisionArray.length) {
-            Set<Revision> grouped = new TreeSet<>();
+        new GroupIterator(revisions, revisions.getTimeOrder()).forEachRemaining(result::add);
 
-            long previousTime = Long.MAX_VALUE - milliSecondWindowSize;
-            int nextIndex = headIndex;
+        return result;
+    }
+
+    @Override
+    public Spliterator<RevisionGroup> spliterator() {
+        Spliterator<RevisionGroup> spliterator = spliterator(revisions, revisions.getTimeOrder());
+        revisions = new RevisionStore();
+
+        return spliterator;
+    }
+
+    @Override
+    public Spliterator<RevisionGroup> spliterator(RevisionStore store, int[] order) {
+        return Spliterators.spliteratorUnknownSize(new GroupIterator(store, order), CHARACTERISTICS);
+    }
+
+    @Override
+    public void setRevisions(RevisionStore revisions) {
+        this.revisions = revisions;
+    }
 
-            while (nextIndex < revisionArray.length
-                    && revisionArray[nextIndex].getTime() <= previousTime + milliSecondWindowSize
-                    && revisionArray[nextIndex].getAuthor().equals(revisionArray[headIndex].getAuthor())) {
+    private class GroupIterator implements Iterator<RevisionGroup> {
+        private final RevisionStore store;
+        private final int[] order; // indices of the store in the order of time
+        private final long milliSecondWindowSize = windowSizeInSecond * 1000;
 
+        private int headIndex = 0;
+        private long groupId = 0;
 
-                grouped.add(revisionArray[nextIndex]);
+        GroupIterator(RevisionStore store, int[] order) {
+            this.store = store;
+            this.order = order;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return headIndex < order.length;
+        }
+
+        @Override
+        public RevisionGroup next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            long previousTime = Long.MAX_VALUE - milliSecondWindowSize;
+            int nextIndex = headIndex;
+
+            while (nextIndex < order.length
+                    && store.getTime(order[nextIndex]) <= previousTime + milliSecondWindowSize
+                    && store.getAuthorId(order[nextIndex]) == store.getAuthorId(order[headIndex])) {
                 nextIndex++;
             }
 
             groupId++;
-            result.add(new RevisionGroup(groupId, grouped));
+            RevisionGroup group = new RevisionGroup(groupId, store, Arrays.copyOfRange(order, headIndex, nextIndex));
 
             headIndex = nextIndex;
-        }
 
-        return result;
-    }
-
-    @Override
-    public void setRevisions(Collection<Revision> revisions) {
-        this.revisions.addAll(revisions);
+            return group;
+        }
     }
 }
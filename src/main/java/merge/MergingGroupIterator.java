@@ -0,0 +1,56 @@
+package merge;
+
+import model.RevisionGroup;
+
+import java.util.*;
+
+// merges groups of several iterators by head time, and gives new group ids in that order.
+// each iterator should return groups in the order of head time, and head times should be distinct.
+class MergingGroupIterator implements Iterator<RevisionGroup> {
+    private final PriorityQueue<Source> queue = new PriorityQueue<>(
+            Comparator.comparing((Source source) -> source.head));
+
+    private long groupId = 0;
+
+    MergingGroupIterator(List<Iterator<RevisionGroup>> iterators) {
+        for (Iterator<RevisionGroup> iterator : iterators) {
+            if (iterator.hasNext()) {
+                queue.add(new Source(iterator));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public RevisionGroup next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Source source = queue.poll();
+        RevisionGroup group = source.head;
+
+        if (source.groups.hasNext()) {
+            source.head = source.groups.next();
+            queue.add(source);
+        }
+
+        groupId++;
+
+        return group.withGroupId(groupId);
+    }
+
+    private static class Source {
+        private final Iterator<RevisionGroup> groups;
+        private RevisionGroup head;
+
+        Source(Iterator<RevisionGroup> groups) {
+            this.groups = groups;
+            this.head = groups.next();
+        }
+    }
+}
@@ -1,36 +1,68 @@
 package merge;
 
-import model.Revision;
 import model.RevisionGroup;
+import model.RevisionStore;
 
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
+import java.util.*;
 
 public class NoMerger implements RevisionMerger {
 
-    private TreeSet<Revision> revisions;
+    private RevisionStore revisions = new RevisionStore();
 
-    public NoMerger() {
-        this.revisions = new TreeSet<>((Comparator<Revision>) (o1, o2) -> Long.compare(o1.getTime(), o2.getTime()));
+    @Override
+    public Set<RevisionGroup> merge() {
+        Set<RevisionGroup> result = new HashSet<>();
+
+        new GroupIterator(revisions, revisions.getTimeOrder()).forEachRemaining(result::add);
+
+        return result;
     }
 
     @Override
-    public Set<RevisionGroup> merge() {
-        final long[] groupId = {0};
-
-        return revisions.stream().map(x -> {
-            TreeSet<Revision> newSet = new TreeSet<>();
-            newSet.add(x);
-            groupId[0]++;
-            return new RevisionGroup(groupId[0], newSet);
-        }).collect(Collectors.toSet());
+    public Spliterator<RevisionGroup> spliterator() {
+        Spliterator<RevisionGroup> spliterator = spliterator(revisions, revisions.getTimeOrder());
+        revisions = new RevisionStore();
+
+        return spliterator;
+    }
+
+    // a group for each revision, so the size is known.
+    @Override
+    public Spliterator<RevisionGroup> spliterator(RevisionStore store, int[] order) {
+        return Spliterators.spliterator(new GroupIterator(store, order), order.length, CHARACTERISTICS);
     }
 
     @Override
-    public void setRevisions(Collection<Revision> revisions) {
-        this.revisions.addAll(revisions);
+    public void setRevisions(RevisionStore revisions) {
+        this.revisions = revisions;
+    }
+
+    // a group for each revision, in the order of time.
+    private static class GroupIterator implements Iterator<RevisionGroup> {
+        private final RevisionStore store;
+        private final int[] order;
+
+        private int headIndex = 0;
+
+        GroupIterator(RevisionStore store, int[] order) {
+            this.store = store;
+            this.order = order;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return headIndex < order.length;
+        }
+
+        @Override
+        public RevisionGroup next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            headIndex++;
+
+            return new RevisionGroup(headIndex, store, new int[]{order[headIndex - 1]});
+        }
     }
 }
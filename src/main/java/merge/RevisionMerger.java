@@ -2,11 +2,44 @@ package merge;
 
 import model.Revision;
 import model.RevisionGroup;
+import model.RevisionStore;
 
-import java.util.Collection;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface RevisionMerger {
+    // groups are sorted by head time, which is the natural order of groups.
+    int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL;
+
     Set<RevisionGroup> merge();
-    void setRevisions(Collection<Revision> revisions);
+
+    // returns the groups one at a time in the order of their head time.
+    // the merger drops the revisions when the iteration starts, so it can be called only once.
+    Spliterator<RevisionGroup> spliterator();
+
+    // groups of the given revisions of the store, which are given as indices in the order of time.
+    // group ids start from 1, and the revisions of the merger are not changed.
+    Spliterator<RevisionGroup> spliterator(RevisionStore store, int[] order);
+
+    default Iterator<RevisionGroup> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    default Iterator<RevisionGroup> iterator(RevisionStore store, int[] order) {
+        return Spliterators.iterator(spliterator(store, order));
+    }
+
+    default Stream<RevisionGroup> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    // groups refer to the revisions of the given store.
+    void setRevisions(RevisionStore revisions);
+
+    default void setRevisions(Collection<Revision> revisions) {
+        RevisionStore store = new RevisionStore();
+        store.addAll(revisions);
+        setRevisions(store);
+    }
 }
@@ -1,19 +1,15 @@
 package merge;
 
-import model.Revision;
 import model.RevisionGroup;
+import model.RevisionStore;
 
 import java.util.*;
 
 public class SlidingWindowMerger implements RevisionMerger {
-    private final TreeSet<Revision> revisions;
+    private RevisionStore revisions = new RevisionStore();
     private long windowSizeInSecond = 60;
     private boolean allowDuplicated = false;
 
-    public SlidingWindowMerger() {
-        this.revisions = new TreeSet<>((Comparator<Revision>) (o1, o2) -> Long.compare(o1.getTime(), o2.getTime()));
-    }
-
     public SlidingWindowMerger setWindowSizeInSecond(long size) {
         if (size < 0) {
             throw new IllegalArgumentException();
@@ -32,42 +28,87 @@ public class SlidingWindowMerger implements RevisionMerger {
 
     @Override
     public Set<RevisionGroup> merge() {
-        Revision[] revisionArray = revisions.toArray(new Revision[revisions.size()]);
         Set<RevisionGroup> result = new TreeSet<>();
-        long milliSecondWindowSize = windowSizeInSecond * 1000;
 
-        int headIndex = 0;
-        long groupId = 0;
-        while (headIndex < revisionArray.length) {
-            Revision head = revisionArray[headIndex];
+        new GroupIterator(revisions, revisions.getTimeOrder()).forEachRemaining(result::add);
 
-            long maxTime = head.getTime() + milliSecondWindowSize;
-            int nextIndex = headIndex;
-
-            Set<Revision> grouped = new TreeSet<>();
+        return result;
+    }
 
-            while (nextIndex < revisionArray.length
-                    && revisionArray[nextIndex].getTime() <= maxTime
-                    && revisionArray[nextIndex].getAuthor().equals(revisionArray[headIndex].getAuthor())) {
-                grouped.add(revisionArray[nextIndex]);
-                nextIndex++;
-            }
+    @Override
+    public Spliterator<RevisionGroup> spliterator() {
+        Spliterator<RevisionGroup> spliterator = spliterator(revisions, revisions.getTimeOrder());
+        revisions = new RevisionStore();
 
-            groupId++;
-            result.add(new RevisionGroup(groupId, grouped));
+        return spliterator;
+    }
 
-            if (allowDuplicated) {
-                headIndex++;
-            } else {
-                headIndex = nextIndex;
-            }
+    // duplicated windows start at every revision, so the number of groups is known.
+    @Override
+    public Spliterator<RevisionGroup> spliterator(RevisionStore store, int[] order) {
+        if (allowDuplicated) {
+            return Spliterators.spliterator(new GroupIterator(store, order), order.length, CHARACTERISTICS);
         }
 
-        return result;
+        return Spliterators.spliteratorUnknownSize(new GroupIterator(store, order), CHARACTERISTICS);
     }
 
     @Override
-    public void setRevisions(Collection<Revision> revisions) {
-        this.revisions.addAll(revisions);
+    public void setRevisions(RevisionStore revisions) {
+        this.revisions = revisions;
+    }
+
+    // the window is [headIndex, endIndex) of the time order. both ends only move forward,
+    // so overlapping windows of duplicated groups are not scanned again for each head.
+    private class GroupIterator implements Iterator<RevisionGroup> {
+        private final RevisionStore store;
+        private final int[] order; // indices of the store in the order of time
+        private final long milliSecondWindowSize = windowSizeInSecond * 1000;
+        private final boolean duplicated = allowDuplicated;
+
+        private int headIndex = 0;
+        private int endIndex = 0;
+        private long groupId = 0;
+
+        GroupIterator(RevisionStore store, int[] order) {
+            this.store = store;
+            this.order = order;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return headIndex < order.length;
+        }
+
+        @Override
+        public RevisionGroup next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            int head = order[headIndex];
+
+            long maxTime = store.getTime(head) + milliSecondWindowSize;
+            int authorId = store.getAuthorId(head);
+
+            // revisions left in the window have the author of the previous head, and are in the new window
+            // only if the new head has the same author. the time limit only grows as the head moves.
+            if (endIndex <= headIndex || store.getAuthorId(order[endIndex - 1]) != authorId) {
+                endIndex = headIndex;
+            }
+
+            while (endIndex < order.length
+                    && store.getTime(order[endIndex]) <= maxTime
+                    && store.getAuthorId(order[endIndex]) == authorId) {
+                endIndex++;
+            }
+
+            groupId++;
+            RevisionGroup group = new RevisionGroup(groupId, store, Arrays.copyOfRange(order, headIndex, endIndex));
+
+            headIndex = duplicated ? headIndex + 1 : endIndex;
+
+            return group;
+        }
     }
 }
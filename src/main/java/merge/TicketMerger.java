@@ -0,0 +1,150 @@
+package merge;
+
+import model.RevisionGroup;
+import model.RevisionStore;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// merges revisions referring the same ticket key in their messages, regardless of the time between them.
+// the first key found in a message is used. revisions without keys are merged by the fallback merger.
+// keys are indexed by a hash map in a pass over the revisions, and the groups are kept as a CSR of indices.
+public class TicketMerger implements RevisionMerger {
+    public static final String DEFAULT_TICKET_PATTERN = "[A-Z][A-Z0-9]+-[0-9]+";
+
+    private RevisionStore revisions = new RevisionStore();
+    private Pattern ticketPattern = Pattern.compile(DEFAULT_TICKET_PATTERN);
+    private RevisionMerger fallback = new NoMerger();
+
+    public TicketMerger setTicketPattern(String pattern) {
+        this.ticketPattern = Pattern.compile(pattern);
+
+        return this;
+    }
+
+    public TicketMerger setFallback(RevisionMerger fallback) {
+        if (fallback == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.fallback = fallback;
+
+        return this;
+    }
+
+    @Override
+    public Set<RevisionGroup> merge() {
+        Set<RevisionGroup> result = new TreeSet<>();
+
+        spliterator(revisions, revisions.getTimeOrder()).forEachRemaining(result::add);
+
+        return result;
+    }
+
+    @Override
+    public Spliterator<RevisionGroup> spliterator() {
+        Spliterator<RevisionGroup> spliterator = spliterator(revisions, revisions.getTimeOrder());
+        revisions = new RevisionStore();
+
+        return spliterator;
+    }
+
+    // groups of keys are made at once, since a key may appear again at any time.
+    // groups of the fallback merger are merged lazily with them by head time.
+    @Override
+    public Spliterator<RevisionGroup> spliterator(RevisionStore store, int[] order) {
+        HashMap<String, Integer> keyIds = new HashMap<>();
+        int[] revisionKeys = new int[order.length]; // key id of each revision in the order, -1 if none
+        int[] keyCounts = new int[16];
+        int unkeyedCount = 0;
+        Matcher matcher = ticketPattern.matcher("");
+
+        for (int i = 0; i < order.length; i++) {
+            String message = store.getMessage(order[i]);
+
+            if (message == null || !matcher.reset(message).find()) {
+                revisionKeys[i] = -1;
+                unkeyedCount++;
+                continue;
+            }
+
+            Integer keyId = keyIds.get(matcher.group());
+
+            if (keyId == null) {
+                keyId = keyIds.size();
+                keyIds.put(matcher.group(), keyId);
+
+                if (keyId == keyCounts.length) {
+                    keyCounts = Arrays.copyOf(keyCounts, keyId << 1);
+                }
+            }
+
+            revisionKeys[i] = keyId;
+            keyCounts[keyId]++;
+        }
+
+        // revisions of key k are indices[offsets[k], offsets[k + 1]), in the order of time.
+        int keyCount = keyIds.size();
+        int[] offsets = new int[keyCount + 1];
+
+        for (int k = 0; k < keyCount; k++) {
+            offsets[k + 1] = offsets[k] + keyCounts[k];
+        }
+
+        int[] positions = Arrays.copyOf(offsets, keyCount);
+        int[] indices = new int[order.length - unkeyedCount];
+        int[] unkeyed = new int[unkeyedCount];
+        int unkeyedPosition = 0;
+
+        for (int i = 0; i < order.length; i++) {
+            if (revisionKeys[i] < 0) {
+                unkeyed[unkeyedPosition++] = order[i];
+            } else {
+                indices[positions[revisionKeys[i]]++] = order[i];
+            }
+        }
+
+        // key ids are given in the order of the first revision, which is the order of head time.
+        List<Iterator<RevisionGroup>> iterators = new ArrayList<>();
+        iterators.add(new KeyGroupIterator(store, indices, offsets));
+        iterators.add(fallback.iterator(store, unkeyed));
+
+        return Spliterators.spliteratorUnknownSize(new MergingGroupIterator(iterators), CHARACTERISTICS);
+    }
+
+    @Override
+    public void setRevisions(RevisionStore revisions) {
+        this.revisions = revisions;
+    }
+
+    private static class KeyGroupIterator implements Iterator<RevisionGroup> {
+        private final RevisionStore store;
+        private final int[] indices;
+        private final int[] offsets;
+
+        private int keyId = 0;
+
+        KeyGroupIterator(RevisionStore store, int[] indices, int[] offsets) {
+            this.store = store;
+            this.indices = indices;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return keyId < offsets.length - 1;
+        }
+
+        @Override
+        public RevisionGroup next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            keyId++;
+
+            return new RevisionGroup(keyId, store, Arrays.copyOfRange(indices, offsets[keyId - 1], offsets[keyId]));
+        }
+    }
+}
@@ -1,36 +1,162 @@
 package model;
 
+import utils.SortUtil;
+
 import java.util.*;
 
+// counts are recorded as per-time deltas and turned into running totals only when they are requested.
+// adding a count is O(1), and resolving m deltas costs a single O(m log m) sort and prefix-sum pass.
 public class AccumulatedEntity {
-    private TreeMap<Long, CountEntity> counts = new TreeMap<>(); // time-count pairs.
+    private static final int INITIAL_CAPACITY = 4;
+
+    // delta log
+    private long[] times = new long[INITIAL_CAPACITY];
+    private int[] sames = new int[INITIAL_CAPACITY];
+    private int[] others = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private boolean sorted = true; // whether the log is sorted by time without duplicated times.
+
+    // running totals of the sorted log. valid only if resolved is true.
+    private int[] totalSames = null;
+    private int[] totalOthers = null;
+    private boolean resolved = false;
+
+    private NavigableMap<Long, CountEntity> counts = null;
 
     // add counts on given time
     public void addCount(long time, int same, int other) {
-        // if there's no count for the given time, then copy the count right before the given time.
-        if (!counts.containsKey(time)) {
-            Map.Entry<Long, CountEntity> entry = counts.lowerEntry(time);
-            int lastSame = 0;
-            int lastOther = 0;
-
-            if (entry != null) {
-                lastSame = entry.getValue().getSameCount();
-                lastOther = entry.getValue().getOtherCount();
+        if (same < 0 || other < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        if (size > 0 && times[size - 1] == time) {
+            sames[size - 1] += same;
+            others[size - 1] += other;
+        } else {
+            if (size == times.length) {
+                grow();
             }
 
-            counts.put(time, new CountEntity(lastSame, lastOther));
+            if (size > 0 && times[size - 1] > time) {
+                sorted = false;
+            }
+
+            times[size] = time;
+            sames[size] = same;
+            others[size] = other;
+            size++;
         }
 
-        // update counts after the given time.
-        NavigableMap<Long, CountEntity> tailMap = counts.tailMap(time, true);
+        resolved = false;
+        counts = null;
+    }
 
-        for (CountEntity countEntity : tailMap.values()) {
-            countEntity.addSameCount(same);
-            countEntity.addOtherCount(other);
+    // add all counts of the given entity.
+    public void addAll(AccumulatedEntity entity) {
+        for (int i = 0; i < entity.size; i++) {
+            addCount(entity.times[i], entity.sames[i], entity.others[i]);
         }
     }
 
+    // K: time, V: accumulated counts at the time.
     public NavigableMap<Long, CountEntity> getCounts() {
-        return Collections.unmodifiableNavigableMap(counts);
+        if (counts == null) {
+            resolve();
+
+            TreeMap<Long, CountEntity> map = new TreeMap<>();
+
+            for (int i = 0; i < size; i++) {
+                map.put(times[i], new CountEntity(totalSames[i], totalOthers[i]));
+            }
+
+            counts = Collections.unmodifiableNavigableMap(map);
+        }
+
+        return counts;
+    }
+
+    // accumulated counts at the given time. O(log m) once resolved.
+    public CountEntity getCountAt(long time) {
+        resolve();
+
+        int index = Arrays.binarySearch(times, 0, size, time);
+
+        if (index < 0) {
+            index = -index - 2; // the greatest time lower than the given time
+        }
+
+        if (index < 0) {
+            return new CountEntity(0, 0);
+        }
+
+        return new CountEntity(totalSames[index], totalOthers[index]);
+    }
+
+    // the number of distinct times.
+    public int size() {
+        resolve();
+
+        return size;
+    }
+
+    private void resolve() {
+        if (resolved) {
+            return;
+        }
+
+        if (!sorted) {
+            compact();
+        }
+
+        totalSames = new int[size];
+        totalOthers = new int[size];
+
+        int same = 0;
+        int other = 0;
+
+        for (int i = 0; i < size; i++) {
+            same += sames[i];
+            other += others[i];
+            totalSames[i] = same;
+            totalOthers[i] = other;
+        }
+
+        resolved = true;
+    }
+
+    // sort the log by time and merge the deltas of the same time.
+    private void compact() {
+        int[] order = SortUtil.sortedIndices(times, size);
+
+        long[] newTimes = new long[size];
+        int[] newSames = new int[size];
+        int[] newOthers = new int[size];
+        int newSize = 0;
+
+        for (int index : order) {
+            if (newSize > 0 && newTimes[newSize - 1] == times[index]) {
+                newSames[newSize - 1] += sames[index];
+                newOthers[newSize - 1] += others[index];
+            } else {
+                newTimes[newSize] = times[index];
+                newSames[newSize] = sames[index];
+                newOthers[newSize] = others[index];
+                newSize++;
+            }
+        }
+
+        times = newTimes;
+        sames = newSames;
+        others = newOthers;
+        size = newSize;
+        sorted = true;
+    }
+
+    private void grow() {
+        int capacity = times.length << 1;
+
+        times = Arrays.copyOf(times, capacity);
+        sames = Arrays.copyOf(sames, capacity);
+        others = Arrays.copyOf(others, capacity);
     }
 }
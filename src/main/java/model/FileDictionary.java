@@ -0,0 +1,64 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+// maps each distinct file name to a dense integer id (0, 1, 2, ...).
+public class FileDictionary {
+    private final HashMap<FileName, Integer> ids = new HashMap<>();
+    private final ArrayList<FileName> files = new ArrayList<>();
+
+    // returns the id of the given file, assigning a new one if it's not known yet.
+    public int intern(FileName file) {
+        Integer id = ids.get(file);
+
+        if (id == null) {
+            id = files.size();
+            ids.put(file, id);
+            files.add(file);
+        }
+
+        return id;
+    }
+
+    // returns the id of the given file, or -1 if it's not known.
+    public int getId(FileName file) {
+        Integer id = ids.get(file);
+
+        return id == null ? -1 : id;
+    }
+
+    public FileName getFile(int id) {
+        return files.get(id);
+    }
+
+    public List<FileName> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    // K: file id, V: position of the file in the order of file names.
+    public int[] getRanks() {
+        Integer[] ids = new Integer[files.size()];
+
+        for (int id = 0; id < ids.length; id++) {
+            ids[id] = id;
+        }
+
+        Arrays.sort(ids, (o1, o2) -> files.get(o1).compareTo(files.get(o2)));
+
+        int[] ranks = new int[ids.length];
+
+        for (int rank = 0; rank < ids.length; rank++) {
+            ranks[ids[rank]] = rank;
+        }
+
+        return ranks;
+    }
+
+    public int size() {
+        return files.size();
+    }
+}
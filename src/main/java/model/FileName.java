@@ -1,63 +1,119 @@
 package model;
 
+// a lowercased file path, kept as the shared directory node and the name after the last '/'.
+// names of a run should be made with the same dictionary, since parent ids are numbered by the dictionary.
+// names of different dictionaries are still compared by their paths.
 public class FileName implements Comparable<FileName> {
-    private String fileName;
+    private final PathDictionary.Directory directory;
+    private final String leaf; // name after the last '/', with the extension
+    private final int extension; // id in the path dictionary
+    private String path = null; // made by the first toString(), since exporters ask it for every pair
 
-    public FileName(String fileName) {
-        this.fileName = fileName.toLowerCase(); // normalize the file name.
+    public FileName(String fileName, PathDictionary dictionary) {
+        fileName = fileName.toLowerCase(); // normalize the file name.
+
+        int splitIndex = fileName.lastIndexOf("/");
+
+        this.directory = dictionary.getDirectory(fileName.substring(0, splitIndex + 1));
+        this.leaf = fileName.substring(splitIndex + 1);
+
+        int extensionIndex = leaf.lastIndexOf(".");
+        this.extension = dictionary.getExtensionId(extensionIndex < 0 ? "" : leaf.substring(extensionIndex + 1));
     }
 
     public String getExtension() {
-        int splitIndex = fileName.lastIndexOf(".");
-
-        if (splitIndex < 0) {
-            return "";
-        }
+        return directory.getDictionary().getExtension(extension);
+    }
 
-        return fileName.substring(splitIndex + 1);
+    public int getExtensionId() {
+        return extension;
     }
 
     public String getParent() {
-        int splitIndex = fileName.lastIndexOf("/");
-
-        if (splitIndex < 0) {
-            return "/";
-        }
+        return directory.isRoot() ? "/" : directory.getPath();
+    }
 
-        return fileName.substring(0, splitIndex + 1);
+    // files of the same parent have the same id. files without '/' have the id of '/'.
+    public int getParentId() {
+        return directory.getPackageId();
     }
 
     public String getName() {
-        int splitIndex = fileName.lastIndexOf("/");
-
-        String subName;
-        if (splitIndex < 0) {
-            subName = fileName;
-        } else {
-            subName = fileName.substring(splitIndex + 1);
-        }
-
-        splitIndex = subName.lastIndexOf(".");
+        int splitIndex = leaf.lastIndexOf(".");
 
         if (splitIndex < 0) {
-            return subName;
+            return leaf;
         }
 
-        return subName.substring(0, splitIndex);
+        return leaf.substring(0, splitIndex);
     }
 
     @Override
     public String toString() {
-        return fileName;
+        if (path == null) {
+            path = directory.getPath(leaf);
+        }
+
+        return path;
     }
 
+    // compares the paths as strings, without building them.
+    // the paths are the same above the common ancestor of the directories, and the segments below it differ.
+    // a segment ends with the only '/' of it, so the first one differing decides the order.
     @Override
     public int compareTo(FileName o) {
-        return fileName.compareTo(o.fileName);
+        PathDictionary.Directory ancestor = directory, otherAncestor = o.directory;
+
+        if (ancestor == otherAncestor) {
+            return leaf.compareTo(o.leaf);
+        }
+
+        if (ancestor.getDictionary() != otherAncestor.getDictionary()) {
+            return toString().compareTo(o.toString());
+        }
+
+        PathDictionary.Directory child = null, otherChild = null; // children of the ancestors on the paths
+
+        while (ancestor.getDepth() > otherAncestor.getDepth()) {
+            child = ancestor;
+            ancestor = ancestor.getParent();
+        }
+
+        while (otherAncestor.getDepth() > ancestor.getDepth()) {
+            otherChild = otherAncestor;
+            otherAncestor = otherAncestor.getParent();
+        }
+
+        while (ancestor != otherAncestor) {
+            child = ancestor;
+            ancestor = ancestor.getParent();
+            otherChild = otherAncestor;
+            otherAncestor = otherAncestor.getParent();
+        }
+
+        return (child == null ? leaf : child.getName()).compareTo(otherChild == null ? o.leaf : otherChild.getName());
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof FileName && fileName.equals(((FileName) obj).fileName);
+        if (!(obj instanceof FileName)) {
+            return false;
+        }
+
+        FileName other = (FileName) obj;
+
+        if (directory == other.directory) {
+            return leaf.equals(other.leaf);
+        }
+
+        // a dictionary has one directory for a path.
+        return directory.getDictionary() != other.directory.getDictionary()
+                && directory.getPathHash() == other.directory.getPathHash()
+                && leaf.equals(other.leaf) && directory.getPath().equals(other.directory.getPath());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * directory.getPathHash() + leaf.hashCode();
     }
 }
@@ -0,0 +1,133 @@
+package model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// append-only store of commit messages. each message is written as a length-prefixed UTF-8 record,
+// and read again with the offset returned by append().
+// records are buffered in memory, and the buffer is moved to a temp file once it exceeds the limit.
+public class MessageStore implements Closeable {
+    private static final int DEFAULT_BUFFER_LIMIT = 1 << 20;
+    private static final int NULL_LENGTH = -1;
+
+    private final int bufferLimit;
+    private final File directory; // null means the default temp directory.
+
+    private byte[] buffer = new byte[256];
+    private int bufferSize = 0;
+    private long fileSize = 0; // offset of the first record in the buffer
+
+    private File file = null;
+    private FileChannel channel = null;
+
+    public MessageStore() {
+        this(DEFAULT_BUFFER_LIMIT, null);
+    }
+
+    public MessageStore(int bufferLimit, File directory) {
+        if (bufferLimit < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.bufferLimit = bufferLimit;
+        this.directory = directory;
+    }
+
+    // returns the offset of the message.
+    public synchronized long append(String message) {
+        byte[] bytes = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+        long offset = fileSize + bufferSize;
+
+        ensureCapacity(bufferSize + 4 + bytes.length);
+        ByteBuffer.wrap(buffer, bufferSize, 4).putInt(message == null ? NULL_LENGTH : bytes.length);
+        System.arraycopy(bytes, 0, buffer, bufferSize + 4, bytes.length);
+        bufferSize += 4 + bytes.length;
+
+        if (bufferSize > bufferLimit) {
+            flush();
+        }
+
+        return offset;
+    }
+
+    public synchronized String read(long offset) {
+        if (offset >= fileSize) {
+            int position = (int) (offset - fileSize);
+            int length = ByteBuffer.wrap(buffer, position, 4).getInt();
+
+            return length == NULL_LENGTH ? null : new String(buffer, position + 4, length, StandardCharsets.UTF_8);
+        }
+
+        try {
+            ByteBuffer header = readFully(offset, 4);
+            int length = header.getInt();
+
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+
+            return new String(readFully(offset + 4, length).array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read the commit message.", e);
+        }
+    }
+
+    // deletes the temp file.
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+
+            }
+
+            file.delete();
+            channel = null;
+        }
+    }
+
+    private void flush() {
+        try {
+            if (channel == null) {
+                file = File.createTempFile("messages", ".dat", directory);
+                file.deleteOnExit();
+                channel = new RandomAccessFile(file, "rw").getChannel();
+            }
+
+            ByteBuffer source = ByteBuffer.wrap(buffer, 0, bufferSize);
+
+            while (source.hasRemaining()) {
+                channel.write(source, fileSize + source.position());
+            }
+
+            fileSize += bufferSize;
+            bufferSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write commit messages to the temp file.", e);
+        }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer target = ByteBuffer.allocate(length);
+
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        target.flip();
+
+        return target;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length << 1));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package model;
+
+// a pair of files changed together, with the association rule metrics of from -> to.
+public class PairEntity {
+    private final FileName from; // the greater file name
+    private final FileName to; // the smaller file name
+    private final int count;
+    private final double support; // count / number of groups
+    private final double confidence; // count / number of groups containing from
+    private final double reverseConfidence; // count / number of groups containing to
+    private final double lift; // confidence / (number of groups containing to / number of groups)
+    private final double jaccard; // number of groups containing both files / number of groups containing either
+
+    public PairEntity(FileName from, FileName to, int count,
+                      double support, double confidence, double reverseConfidence, double lift, double jaccard) {
+        this.from = from;
+        this.to = to;
+        this.count = count;
+        this.support = support;
+        this.confidence = confidence;
+        this.reverseConfidence = reverseConfidence;
+        this.lift = lift;
+        this.jaccard = jaccard;
+    }
+
+    public FileName getFrom() {
+        return from;
+    }
+
+    public FileName getTo() {
+        return to;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSupport() {
+        return support;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public double getReverseConfidence() {
+        return reverseConfidence;
+    }
+
+    public double getLift() {
+        return lift;
+    }
+
+    public double getJaccard() {
+        return jaccard;
+    }
+}
@@ -0,0 +1,156 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// shared directories and extensions of the file names of a run.
+// directories form a trie where each node keeps its parent and its own segment, like "name/",
+// so files of the same directory share one node, and directories share the nodes of their prefixes.
+// each node keeps its path too, which is made once from the path of its parent.
+// it's used by several collector threads at once, so nodes are only added and never changed.
+public class PathDictionary {
+    private final ConcurrentHashMap<String, Integer> extensionIds = new ConcurrentHashMap<>();
+    private volatile String[] extensions = new String[0]; // K: extension id
+    private int directoryCount = 1; // guarded by this
+
+    private final Directory root; // directory of the files without '/'. its parent name is '/'.
+
+    public PathDictionary() {
+        root = new Directory(this, 0, null, "", 1);
+        getDirectory("/");
+    }
+
+    // returns the directory of the given path, which should be empty or end with '/'.
+    // the parents are found first, so that the parent of a directory always has a smaller id.
+    public Directory getDirectory(String path) {
+        Directory directory = root;
+
+        for (int start = 0, end; start < path.length(); start = end) {
+            end = path.indexOf('/', start) + 1;
+            directory = getChild(directory, path.substring(start, end));
+        }
+
+        return directory;
+    }
+
+    public int getExtensionId(String extension) {
+        Integer id = extensionIds.get(extension);
+
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = extensionIds.get(extension);
+
+            if (id == null) {
+                id = extensions.length;
+                String[] grown = Arrays.copyOf(extensions, id + 1);
+                grown[id] = extension;
+                extensions = grown;
+                extensionIds.put(extension, id);
+            }
+        }
+
+        return id;
+    }
+
+    public String getExtension(int id) {
+        return extensions[id];
+    }
+
+    // number of directories, including the directory of the files without '/'.
+    public synchronized int getDirectoryCount() {
+        return directoryCount;
+    }
+
+    private Directory getChild(Directory parent, String name) {
+        ConcurrentHashMap<String, Directory> children = parent.children;
+        Directory child = children == null ? null : children.get(name);
+
+        if (child != null) {
+            return child;
+        }
+
+        synchronized (this) {
+            if (parent.children == null) {
+                parent.children = new ConcurrentHashMap<>();
+            }
+
+            child = parent.children.get(name);
+
+            if (child == null) {
+                int id = directoryCount++;
+                child = new Directory(this, id, parent, name, id);
+                parent.children.put(name, child);
+            }
+        }
+
+        return child;
+    }
+
+    public static final class Directory {
+        private final PathDictionary dictionary;
+        private final int id;
+        private final Directory parent; // null for the root
+        private final String name; // segment after the parent, which ends with '/'. empty for the root.
+        private final int packageId; // id of the directory returned by FileName.getParent()
+        private final int depth; // number of segments
+        private final String path;
+
+        private volatile ConcurrentHashMap<String, Directory> children = null; // K: name. created with the first one.
+
+        private Directory(PathDictionary dictionary, int id, Directory parent, String name, int packageId) {
+            this.dictionary = dictionary;
+            this.id = id;
+            this.parent = parent;
+            this.name = name;
+            this.packageId = packageId;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.path = parent == null ? name : parent.path.concat(name);
+        }
+
+        public PathDictionary getDictionary() {
+            return dictionary;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Directory getParent() {
+            return parent;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // ends with '/', except the root.
+        public String getPath() {
+            return path;
+        }
+
+        // the path followed by the given name.
+        public String getPath(String leaf) {
+            return path.concat(leaf);
+        }
+
+        public int getPackageId() {
+            return packageId;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public boolean isRoot() {
+            return parent == null;
+        }
+
+        // same as getPath().hashCode(), which is cached by the string.
+        public int getPathHash() {
+            return path.hashCode();
+        }
+    }
+}
@@ -8,6 +8,8 @@ public class Revision implements Comparable<Revision> {
     private String id;
     private String author;
     private String message;
+    private MessageStore messages = null; // if given, the message is read from the store when it's requested.
+    private long messageOffset = -1;
 
     private long time; // epoch time
     private TreeSet<FileName> changedFiles;
@@ -20,6 +22,12 @@ public class Revision implements Comparable<Revision> {
         changedFiles = new TreeSet<>();
     }
 
+    public Revision(String id, long time, String author, MessageStore messages, long messageOffset) {
+        this(id, time, author, null);
+        this.messages = messages;
+        this.messageOffset = messageOffset;
+    }
+
     public void addFile (FileName file) {
         changedFiles.add(file);
     }
@@ -41,6 +49,10 @@ public class Revision implements Comparable<Revision> {
     }
 
     public String getMessage() {
+        if (messages != null) {
+            return messages.read(messageOffset);
+        }
+
         return message;
     }
 
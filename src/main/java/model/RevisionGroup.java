@@ -2,8 +2,10 @@ package model;
 
 import java.util.*;
 
+// revisions of a revision store, given as indices in the ascending order of time.
 public class RevisionGroup implements Comparable<RevisionGroup> {
-    private TreeSet<Revision> revisions;
+    private final RevisionStore store;
+    private final int[] indices;
     private long groupId;
 
     public RevisionGroup(long groupId, Set<Revision> revisions) {
@@ -11,36 +13,119 @@ public class RevisionGroup implements Comparable<RevisionGroup> {
             throw new IllegalArgumentException("A revision group must contains at least 1 revision.");
         }
 
-        this.revisions = new TreeSet<>((o1, o2) -> {
+        TreeSet<Revision> sorted = new TreeSet<>((o1, o2) -> {
             return Long.compare(o1.getTime(), o2.getTime());
         });
 
-        this.revisions.addAll(revisions);
+        sorted.addAll(revisions);
 
+        this.store = new RevisionStore();
+        this.store.addAll(sorted);
+        this.indices = new int[sorted.size()];
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+
+        this.groupId = groupId;
+    }
+
+    // the indices should be sorted by the time of the revisions, without duplicated times.
+    public RevisionGroup(long groupId, RevisionStore store, int[] indices) {
+        if (indices.length == 0) {
+            throw new IllegalArgumentException("A revision group must contains at least 1 revision.");
+        }
+
+        this.store = store;
+        this.indices = indices;
         this.groupId = groupId;
     }
 
+    // the same revisions with another group id.
+    public RevisionGroup withGroupId(long groupId) {
+        return new RevisionGroup(groupId, store, indices);
+    }
+
     public long getHeadTime() {
-        return revisions.first().getTime();
+        return store.getTime(indices[0]);
     }
 
     public String getHeadId() {
-        return revisions.first().getId();
+        return store.getId(indices[0]);
+    }
+
+    public long getLastTime() {
+        return store.getTime(indices[indices.length - 1]);
     }
 
     public long getGroupId() {
         return groupId;
     }
 
+    public RevisionStore getStore() {
+        return store;
+    }
+
+    public int size() {
+        return indices.length;
+    }
+
+    // index of the i-th revision in the store.
+    public int getIndex(int i) {
+        return indices[i];
+    }
+
+    // revisions are created from the store for each call.
     public SortedSet<Revision> getRevisions() {
+        TreeSet<Revision> revisions = new TreeSet<>((o1, o2) -> {
+            return Long.compare(o1.getTime(), o2.getTime());
+        });
+
+        for (int index : indices) {
+            revisions.add(store.getRevision(index));
+        }
+
         return Collections.unmodifiableSortedSet(revisions);
     }
 
+    // distinct ids of the changed files in the file dictionary of the store, in ascending order.
+    public int[] getFileIds() {
+        int count = 0;
+
+        for (int index : indices) {
+            count += store.getFileCount(index);
+        }
+
+        int[] fileIds = new int[count];
+        int position = 0;
+
+        for (int index : indices) {
+            for (int j = 0; j < store.getFileCount(index); j++) {
+                fileIds[position++] = store.getFileId(index, j);
+            }
+        }
+
+        if (indices.length == 1) {
+            return fileIds; // already sorted and distinct
+        }
+
+        Arrays.sort(fileIds);
+        int distinct = 0;
+
+        for (int i = 0; i < fileIds.length; i++) {
+            if (i == 0 || fileIds[i] != fileIds[i - 1]) {
+                fileIds[distinct++] = fileIds[i];
+            }
+        }
+
+        return Arrays.copyOf(fileIds, distinct);
+    }
+
     public SortedSet<FileName> getFiles() {
         SortedSet<FileName> files = new TreeSet<>();
 
-        for (Revision revision : revisions) {
-            files.addAll(revision.getChangedFiles());
+        for (int id : getFileIds()) {
+            files.add(store.getFileDictionary().getFile(id));
         }
 
         return files;
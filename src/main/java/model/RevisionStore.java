@@ -0,0 +1,248 @@
+package model;
+
+import utils.SortUtil;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+// revisions kept in columns, indexed by the order of addition.
+// changed files of revision i are fileIds[fileOffsets[i], fileOffsets[i + 1]), sorted by file ids,
+// and authors and files are kept as ids of their dictionaries.
+// messages are kept in a message store, and read only when revisions are created from the store.
+public class RevisionStore implements Closeable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final FileDictionary files = new FileDictionary();
+    private final HashMap<String, Integer> authorIds = new HashMap<>();
+    private final ArrayList<String> authors = new ArrayList<>();
+    private final MessageStore messages;
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY];
+    private int[] authorIndices = new int[INITIAL_CAPACITY];
+    private long[] messageOffsets = new long[INITIAL_CAPACITY];
+    private int[] fileOffsets = new int[INITIAL_CAPACITY + 1];
+    private int[] fileIds = new int[INITIAL_CAPACITY * 4];
+    private int size = 0;
+
+    private int[] timeOrder = null;
+    private int releasedCount = 0; // revisions of the time order whose ids are dropped
+
+    public RevisionStore() {
+        this(new MessageStore());
+    }
+
+    public RevisionStore(MessageStore messages) {
+        this.messages = messages;
+    }
+
+    // returns the index of the added revision.
+    public int add(String id, long time, String author, String message, Collection<FileName> changedFiles) {
+        if (size == times.length) {
+            int capacity = size << 1;
+            ids = Arrays.copyOf(ids, capacity);
+            times = Arrays.copyOf(times, capacity);
+            authorIndices = Arrays.copyOf(authorIndices, capacity);
+            messageOffsets = Arrays.copyOf(messageOffsets, capacity);
+            fileOffsets = Arrays.copyOf(fileOffsets, capacity + 1);
+        }
+
+        int offset = fileOffsets[size];
+
+        if (offset + changedFiles.size() > fileIds.length) {
+            fileIds = Arrays.copyOf(fileIds, Math.max(offset + changedFiles.size(), fileIds.length << 1));
+        }
+
+        for (FileName file : changedFiles) {
+            fileIds[offset++] = files.intern(file);
+        }
+
+        Arrays.sort(fileIds, fileOffsets[size], offset);
+
+        // ids of a revision are distinct, even if the collection is not a set.
+        int distinct = fileOffsets[size];
+
+        for (int i = fileOffsets[size]; i < offset; i++) {
+            if (i == fileOffsets[size] || fileIds[i] != fileIds[i - 1]) {
+                fileIds[distinct++] = fileIds[i];
+            }
+        }
+
+        offset = distinct;
+
+        ids[size] = id;
+        times[size] = time;
+        authorIndices[size] = internAuthor(author);
+        messageOffsets[size] = messages.append(message);
+        fileOffsets[size + 1] = offset;
+        timeOrder = null;
+        releasedCount = 0;
+
+        return size++;
+    }
+
+    public int add(Revision revision) {
+        return add(revision.getId(), revision.getTime(), revision.getAuthor(), revision.getMessage(),
+                revision.getChangedFiles());
+    }
+
+    public void addAll(Collection<Revision> revisions) {
+        for (Revision revision : revisions) {
+            add(revision);
+        }
+    }
+
+    // removes the revisions of the given indices. the indices of the remaining revisions are changed.
+    public void removeIf(IntPredicate filter) {
+        int newSize = 0;
+        int offset = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (filter.test(i)) {
+                continue;
+            }
+
+            int start = fileOffsets[i], end = fileOffsets[i + 1];
+
+            ids[newSize] = ids[i];
+            times[newSize] = times[i];
+            authorIndices[newSize] = authorIndices[i];
+            messageOffsets[newSize] = messageOffsets[i];
+            System.arraycopy(fileIds, start, fileIds, offset, end - start);
+            fileOffsets[newSize] = offset;
+            offset += end - start;
+            newSize++;
+        }
+
+        Arrays.fill(ids, newSize, size, null);
+        fileOffsets[newSize] = offset;
+        size = newSize;
+        timeOrder = null;
+        releasedCount = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getId(int index) {
+        return ids[index];
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public int getAuthorId(int index) {
+        return authorIndices[index];
+    }
+
+    public String getAuthor(int index) {
+        return authors.get(authorIndices[index]);
+    }
+
+    public String getMessage(int index) {
+        return messages.read(messageOffsets[index]);
+    }
+
+    public FileDictionary getFileDictionary() {
+        return files;
+    }
+
+    public int getFileCount(int index) {
+        return fileOffsets[index + 1] - fileOffsets[index];
+    }
+
+    // id of the j-th changed file of the revision, in the ascending order of file ids.
+    public int getFileId(int index, int j) {
+        return fileIds[fileOffsets[index] + j];
+    }
+
+    public Revision getRevision(int index) {
+        Revision revision = new Revision(ids[index], times[index], getAuthor(index), messages, messageOffsets[index]);
+
+        for (int i = fileOffsets[index]; i < fileOffsets[index + 1]; i++) {
+            revision.addFile(files.getFile(fileIds[i]));
+        }
+
+        return revision;
+    }
+
+    // indices of the revisions in the ascending order of time.
+    // like a set ordered by time, only the revision of the smallest id is kept among revisions of the same time.
+    public int[] getTimeOrder() {
+        if (timeOrder == null) {
+            int[] order = SortUtil.sortedIndices(times, size);
+            int count = 0;
+
+            for (int start = 0, end = 0; start < size; start = end) {
+                int first = order[start];
+
+                for (end = start + 1; end < size && times[order[end]] == times[first]; end++) {
+                    if (ids[order[end]].compareTo(ids[first]) < 0) {
+                        first = order[end];
+                    }
+                }
+
+                order[count++] = first;
+            }
+
+            timeOrder = Arrays.copyOf(order, count);
+        }
+
+        return timeOrder.clone();
+    }
+
+    // drops the ids of the revisions of the time order older than the given time, when groups are streamed
+    // in the order of their head time and each group is done before the next one is taken.
+    // groups after the head don't have older revisions, so they're never read again.
+    // times, authors and file ids are primitive columns which stay, and messages are mostly on the disk.
+    public void releaseBefore(long time) {
+        getTimeOrder();
+
+        while (releasedCount < timeOrder.length && times[timeOrder[releasedCount]] < time) {
+            ids[timeOrder[releasedCount++]] = null;
+        }
+    }
+
+    // the latest time of the revisions, or -1 if empty.
+    public long getLatestTime() {
+        long latest = -1;
+
+        for (int i = 0; i < size; i++) {
+            latest = Math.max(latest, times[i]);
+        }
+
+        return latest;
+    }
+
+    // the earliest time of the revisions, or -1 if empty.
+    public long getEarliestTime() {
+        long earliest = size == 0 ? -1 : Long.MAX_VALUE;
+
+        for (int i = 0; i < size; i++) {
+            earliest = Math.min(earliest, times[i]);
+        }
+
+        return earliest;
+    }
+
+    // deletes the messages written to the disk. revisions can't be read from the store after that.
+    @Override
+    public void close() {
+        messages.close();
+    }
+
+    private int internAuthor(String author) {
+        Integer id = authorIds.get(author);
+
+        if (id == null) {
+            id = authors.size();
+            authorIds.put(author, id);
+            authors.add(author);
+        }
+
+        return id;
+    }
+}
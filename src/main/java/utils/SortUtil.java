@@ -0,0 +1,41 @@
+package utils;
+
+public class SortUtil {
+    // returns the indices of the first 'size' keys in ascending order of the keys.
+    // the sort is stable, so indices of equal keys keep their original order.
+    public static int[] sortedIndices(long[] keys, int size) {
+        int[] indices = new int[size];
+        int[] buffer = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+
+        // bottom-up merge sort
+        for (int width = 1; width < size; width <<= 1) {
+            for (int left = 0; left < size; left += width << 1) {
+                int middle = Math.min(left + width, size);
+                int right = Math.min(left + (width << 1), size);
+                int i = left, j = middle, k = left;
+
+                while (i < middle && j < right) {
+                    buffer[k++] = keys[indices[j]] < keys[indices[i]] ? indices[j++] : indices[i++];
+                }
+
+                while (i < middle) {
+                    buffer[k++] = indices[i++];
+                }
+
+                while (j < right) {
+                    buffer[k++] = indices[j++];
+                }
+            }
+
+            int[] temp = indices;
+            indices = buffer;
+            buffer = temp;
+        }
+
+        return indices;
+    }
+}
@@ -0,0 +1,106 @@
+package collect;
+
+import model.FileName;
+import model.PathDictionary;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// the index is compared with maps of the commits and the paths, over runs reopening the index.
+// paths are numbered in the order they're first put.
+public class ChangedPathIndexTest {
+    private static final String[] SEGMENTS = {"src/", "a/", "A/", "é/", "日本/", "a b/", "z/"};
+    private static final String[] LEAVES = {"x.java", "X.java", "y.txt", "ü.java", "b", "a.c", "/dev/null"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRuns() throws IOException {
+        Random random = new Random(8);
+        File directory = new File(folder.getRoot(), "index");
+        PathFilter filter = new PathFilter(new HashSet<>(Arrays.asList("java", "")), new HashSet<>(Arrays.asList("z/")));
+
+        Map<ObjectId, List<String>> commits = new LinkedHashMap<>();
+        Map<String, Integer> pathIds = new HashMap<>();
+        List<ObjectId> unknownCommits = new ArrayList<>();
+
+        for (int run = 0; run < 5; run++) {
+            PathDictionary dictionary = new PathDictionary();
+
+            try (ChangedPathIndex index = new ChangedPathIndex(directory, filter, dictionary)) {
+                assertCommits(index, commits, pathIds, filter, dictionary);
+
+                for (ObjectId commit : unknownCommits) {
+                    assertNull(index.get(commit));
+                }
+
+                for (int i = random.nextInt(200); i > 0; i--) {
+                    ObjectId commit = randomId(random);
+                    List<String> paths = new ArrayList<>();
+
+                    for (int j = random.nextInt(6); j > 0; j--) {
+                        paths.add(randomPath(random));
+                    }
+
+                    for (String path : paths) {
+                        pathIds.putIfAbsent(path, pathIds.size());
+                    }
+
+                    commits.put(commit, paths);
+                    assertArrayEquals(toIds(paths, pathIds), index.put(commit, paths));
+                    unknownCommits.add(randomId(random));
+                }
+
+                assertCommits(index, commits, pathIds, filter, dictionary);
+            }
+        }
+    }
+
+    private static void assertCommits(ChangedPathIndex index, Map<ObjectId, List<String>> commits,
+                                      Map<String, Integer> pathIds, PathFilter filter, PathDictionary dictionary) {
+        for (Map.Entry<ObjectId, List<String>> entry : commits.entrySet()) {
+            int[] ids = index.get(entry.getKey());
+            TreeSet<FileName> expected = new TreeSet<>();
+
+            for (String path : entry.getValue()) {
+                if (filter.isAllowed(path)) {
+                    expected.add(new FileName(path, dictionary));
+                }
+            }
+
+            assertArrayEquals(toIds(entry.getValue(), pathIds), ids);
+            assertEquals(expected, index.getChangedFiles(ids));
+        }
+    }
+
+    private static int[] toIds(List<String> paths, Map<String, Integer> pathIds) {
+        return paths.stream().mapToInt(pathIds::get).toArray();
+    }
+
+    private static ObjectId randomId(Random random) {
+        byte[] bytes = new byte[20];
+        random.nextBytes(bytes);
+
+        return ObjectId.fromRaw(bytes);
+    }
+
+    private static String randomPath(Random random) {
+        StringBuilder path = new StringBuilder();
+
+        for (int i = random.nextInt(3); i > 0; i--) {
+            path.append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+
+        return path.append(LEAVES[random.nextInt(LEAVES.length)]).toString();
+    }
+}
@@ -0,0 +1,233 @@
+package collect;
+
+import model.Revision;
+import model.RevisionStore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// the token reader and the log parser are compared with splitting the whole output at NUL.
+public class GitCliRevisionCollectorTest {
+    private static final String ALPHABET = "ab \n/.é日\u0001";
+    private static final String[] STATUSES = {"M", "A", "D", "T"};
+    private static final String[] PATHS = {"a.java", "src/b.java", "src/ü.java", "a b/c.java", "d.txt", "e"};
+
+    // output of the first commits of a repository, with a deletion, an addition and a root commit.
+    private static final String LOG = "\u00014e68b0ae1cfe56a01f49fff7d89810d1d083d878 1500009950 "
+            + "270e2336f9a2ac61b9c259947a43e750f71e797c\0b@example.com\0rm\n\0\nD\0src/m3.java\0"
+            + "\u0001270e2336f9a2ac61b9c259947a43e750f71e797c 1500009900 "
+            + "e5056acac01a85b84739779dd03c0217abf15e40\0a@example.com\0nf\n\0\nA\0src/newfile.java\0M\0README\0"
+            + "\u0001e5056acac01a85b84739779dd03c0217abf15e40 1500009000 \0a@example.com\0init\n\0\nA\0src/m3.java\0";
+
+    @Test
+    public void testLog() throws IOException {
+        GitCliRevisionCollector collector = newCollector().setAllowedExtensions(new String[]{"java", ""});
+        RevisionStore revisions = new RevisionStore();
+
+        assertTrue(collector.readLog(toStream(LOG, new Random(9)), revisions));
+        assertEquals(Arrays.asList(
+                "4e68b0ae1cfe56a01f49fff7d89810d1d083d878 1500009950000 b@example.com rm\n [/dev/null]",
+                "270e2336f9a2ac61b9c259947a43e750f71e797c 1500009900000 a@example.com nf\n [readme, src/newfile.java]"),
+                toStrings(revisions));
+    }
+
+    @Test
+    public void testRandomLogs() throws IOException {
+        Random random = new Random(10);
+
+        for (int t = 0; t < 500; t++) {
+            StringBuilder log = new StringBuilder();
+            long time = 1500000000L + random.nextInt(1000);
+
+            for (int i = random.nextInt(30); i > 0; i--) {
+                time -= random.nextInt(3);
+                log.append(random.nextBoolean() ? "" : "\n").append('\u0001').append("c").append(i)
+                        .append(' ').append(time).append(' ');
+
+                // root commits, commits of one parent and merges
+                int parentCount = random.nextInt(4) == 0 ? 0 : random.nextInt(4) == 0 ? 2 : 1;
+
+                for (int p = 1; p <= parentCount; p++) {
+                    log.append("p").append(p).append(p < parentCount ? " " : "");
+                }
+
+                // the author and the message
+                log.append('\0').append(randomString(random, 8)).append('\0')
+                        .append(randomString(random, 8)).append('\0');
+
+                for (int j = random.nextInt(4); j > 0; j--) {
+                    log.append(j == 1 ? "\n" : "").append(STATUSES[random.nextInt(STATUSES.length)]).append('\0')
+                            .append(PATHS[random.nextInt(PATHS.length)]).append('\0');
+                }
+            }
+
+            GitCliRevisionCollector collector = newCollector()
+                    .setAllowedExtensions(random.nextBoolean() ? new String[]{"java"} : new String[]{"java", "", "txt"})
+                    .setIgnoreStrings(random.nextBoolean() ? new String[0] : new String[]{"src/"})
+                    .setLimit(random.nextInt(5))
+                    .setFrom(random.nextBoolean() ? -1 : (1500000000L + random.nextInt(1000) - 30) * 1000)
+                    .setTo(random.nextBoolean() ? -1 : (1500000000L + random.nextInt(1000) - 20) * 1000);
+
+            List<String> expected = new ArrayList<>();
+            boolean completed = readLog(log.toString(), collector, expected);
+            RevisionStore revisions = new RevisionStore();
+
+            assertEquals(log.toString(), completed, collector.readLog(toStream(log.toString(), random), revisions));
+            assertEquals(log.toString(), expected, toStrings(revisions));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnexpectedHeader() throws IOException {
+        newCollector().readLog(toStream("c1 1500000000 p1\0message\0", new Random(11)), new RevisionStore());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnexpectedEnd() throws IOException {
+        newCollector().setAllowedExtensions(new String[]{"java"})
+                .readLog(toStream("\u0001c1 1500000000 p1\0a@example.com\0message\0\nM\0", new Random(12)),
+                        new RevisionStore());
+    }
+
+    // tokens longer than the buffer are read in small pieces.
+    @Test
+    public void testTokenReader() throws IOException {
+        Random random = new Random(13);
+
+        for (int t = 0; t < 300; t++) {
+            StringBuilder output = new StringBuilder();
+
+            for (int i = random.nextInt(20); i > 0; i--) {
+                output.append(random.nextInt(50) == 0 ? randomString(random, 200000) : randomString(random, 10));
+                output.append(i > 1 || random.nextBoolean() ? "\0" : "");
+            }
+
+            List<String> expected = split(output.toString());
+            List<String> tokens = new ArrayList<>();
+            GitCliRevisionCollector.TokenReader reader =
+                    new GitCliRevisionCollector.TokenReader(toStream(output.toString(), random));
+
+            while (reader.next()) {
+                tokens.add(reader.decode(0, reader.length()));
+            }
+
+            assertEquals(expected, tokens);
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testTokenReaderFields() throws IOException {
+        GitCliRevisionCollector.TokenReader reader =
+                new GitCliRevisionCollector.TokenReader(toStream("\n\n\u0001id 123 p", new Random(14)));
+
+        assertTrue(reader.next());
+        assertEquals(2, reader.skip('\n'));
+        assertEquals(5, reader.indexOf(' ', 2));
+        assertEquals(9, reader.indexOf(' ', 6));
+        assertEquals(11, reader.indexOf('x', 0));
+        assertEquals(123, reader.parseLong(6, 9));
+        assertEquals("id", reader.decode(3, 5));
+    }
+
+    // the rules of readLog() applied to the split output. returns false if it's stopped.
+    private static boolean readLog(String log, GitCliRevisionCollector collector, List<String> revisions) {
+        List<String> tokens = split(log);
+        long limit = collector.getLimit() > 0 ? collector.getLimit() : Long.MAX_VALUE;
+        int i = 0;
+
+        while (i < tokens.size()) {
+            String[] header = tokens.get(i).replaceFirst("^\n*\u0001", "").split(" ", -1);
+            long time = Long.parseLong(header[1]) * 1000;
+            int parentCount = header.length == 3 && header[2].isEmpty() ? 0 : header.length - 2;
+
+            if (limit < 0 || (collector.getFrom() > 0 && time < collector.getFrom())) {
+                return false;
+            }
+
+            boolean used = (collector.getTo() <= 0 || time <= collector.getTo()) && parentCount == 1;
+            String author = tokens.get(i + 1);
+            String message = tokens.get(i + 2);
+            TreeSet<String> files = new TreeSet<>();
+
+            for (i += 3; i < tokens.size() && !tokens.get(i).replaceFirst("^\n*", "").startsWith("\u0001"); i += 2) {
+                String status = tokens.get(i).replaceFirst("^\n*", "");
+                String path = tokens.get(i + 1);
+
+                if ((status.equals("D") || status.equals("T")) && collector.getPathFilter().isAllowed("/dev/null")) {
+                    files.add("/dev/null");
+                }
+
+                if (!status.equals("D") && collector.getPathFilter().isAllowed(path)) {
+                    files.add(path.toLowerCase());
+                }
+            }
+
+            if (used) {
+                if (!files.isEmpty()) {
+                    revisions.add(header[0] + " " + time + " " + author + " " + message + " " + files);
+                }
+
+                limit--;
+            }
+        }
+
+        return true;
+    }
+
+    private static List<String> toStrings(RevisionStore revisions) {
+        List<String> result = new ArrayList<>();
+
+        for (int i = 0; i < revisions.size(); i++) {
+            Revision revision = revisions.getRevision(i);
+            result.add(revision.getId() + " " + revision.getTime() + " " + revision.getAuthor() + " "
+                    + revision.getMessage() + " " + revision.getChangedFiles());
+        }
+
+        return result;
+    }
+
+    // the last token may not end with NUL.
+    private static List<String> split(String output) {
+        List<String> tokens = new ArrayList<>(Arrays.asList(output.split("\0", -1)));
+
+        if (tokens.get(tokens.size() - 1).isEmpty()) {
+            tokens.remove(tokens.size() - 1);
+        }
+
+        return tokens;
+    }
+
+    private static GitCliRevisionCollector newCollector() {
+        return new GitCliRevisionCollector(new File("unused.git"), "master");
+    }
+
+    // returns a few bytes at a time, like a pipe.
+    private static InputStream toStream(String output, Random random) {
+        return new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] bytes, int offset, int length) {
+                return super.read(bytes, offset, Math.min(length, 1 + random.nextInt(random.nextBoolean() ? 7 : 70000)));
+            }
+        };
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package collect;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+// the compiled filter is compared with the rules checked one by one on the lowercased path.
+public class PathFilterTest {
+    private static final String ALPHABET = "abAB./._-cCéİ";
+
+    @Test
+    public void testRandomPaths() {
+        Random random = new Random(1);
+
+        for (int t = 0; t < 2000; t++) {
+            Set<String> extensions = new HashSet<>();
+            Set<String> ignoreStrings = new HashSet<>();
+
+            for (int i = random.nextInt(5); i > 0; i--) {
+                extensions.add(randomString(random, 3).toLowerCase());
+            }
+
+            // an empty ignore string ignores all paths, so it's rarely added.
+            for (int i = random.nextInt(5); i > 0; i--) {
+                String ignoreString = randomString(random, 4).toLowerCase();
+
+                if (!ignoreString.isEmpty() || random.nextInt(20) == 0) {
+                    ignoreStrings.add(ignoreString);
+                }
+            }
+
+            PathFilter filter = new PathFilter(extensions, ignoreStrings);
+
+            for (int k = 0; k < 500; k++) {
+                String path = randomString(random, 12);
+                String message = path + " " + extensions + " " + ignoreStrings;
+
+                assertEquals(message, isAllowed(path, extensions, ignoreStrings), filter.isAllowed(path));
+                assertEquals(message, containsIgnoreString(path, ignoreStrings), filter.containsIgnoreString(path));
+            }
+        }
+    }
+
+    @Test
+    public void testDevNull() {
+        Set<String> extensions = new HashSet<>();
+        extensions.add("");
+        PathFilter filter = new PathFilter(extensions, new HashSet<>());
+
+        assertEquals(true, filter.isAllowed("/dev/null"));
+        assertEquals(false, filter.isAllowed("a.java"));
+    }
+
+    private static boolean isAllowed(String path, Set<String> extensions, Set<String> ignoreStrings) {
+        String lowerPath = path.toLowerCase();
+        int leafIndex = lowerPath.lastIndexOf('/') + 1;
+        int extensionIndex = lowerPath.lastIndexOf('.');
+        String extension = extensionIndex < leafIndex ? "" : lowerPath.substring(extensionIndex + 1);
+
+        return extensions.contains(extension) && !containsIgnoreString(path, ignoreStrings);
+    }
+
+    private static boolean containsIgnoreString(String path, Set<String> ignoreStrings) {
+        String lowerPath = path.toLowerCase();
+
+        for (String ignoreString : ignoreStrings) {
+            if (lowerPath.contains(ignoreString)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+
+        return builder.toString();
+    }
+}
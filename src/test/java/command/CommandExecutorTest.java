@@ -0,0 +1,169 @@
+package command;
+
+import collect.GitCliRevisionCollector;
+import com.beust.jcommander.JCommander;
+import export.FileRelationExporter;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+// incremental runs are compared with full runs over the same commits of a git repository.
+public class CommandExecutorTest {
+    private static final long START = 1500000000000L;
+    private static final long[] GAPS = {60 * 1000L, 300 * 1000L, 3 * 3600 * 1000L}; // within or beyond the window
+    private static final int FILE_COUNT = 5;
+    private static final String WINDOW_SIZE = "600";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIncremental() throws Exception {
+        testIncremental(CommandOptions.GitBackend.JGit);
+    }
+
+    @Test
+    public void testIncrementalWithCli() throws Exception {
+        assumeTrue(GitCliRevisionCollector.isAvailable());
+        testIncremental(CommandOptions.GitBackend.Cli);
+    }
+
+    // an initial run and an incremental run make the result of a full run,
+    // and a merged branch older than the saved state makes the next run a full one.
+    private void testIncremental(CommandOptions.GitBackend backend) throws Exception {
+        Random random = new Random(10);
+        File output = folder.newFolder("output");
+
+        try (Git git = Git.init().setDirectory(folder.newFolder("repository")).call()) {
+            String url = "file://" + new File(git.getRepository().getDirectory().getAbsolutePath()).getPath();
+            List<RevCommit> commits = new ArrayList<>();
+            long time = START;
+
+            for (int i = 0; i < 20; i++) {
+                time += GAPS[random.nextInt(GAPS.length)];
+                commits.add(commit(git, random, "src/a", time));
+            }
+
+            File initial = run(url, backend, output, "incremental", true);
+            rename(initial, "initial");
+
+            // the first new commit is merged with the open group of the saved state.
+            time += GAPS[0];
+
+            for (int i = 0; i < 10; i++) {
+                commits.add(commit(git, random, "src/a", time));
+                time += GAPS[random.nextInt(GAPS.length)];
+            }
+
+            File incremental = run(url, backend, output, "incremental", true);
+            File full = run(url, backend, output, "full", false);
+
+            for (String table : Arrays.asList(FileRelationExporter.TABLE_PAIR, FileRelationExporter.TABLE_ACCUMULATED,
+                    FileRelationExporter.TABLE_LATEST_REVISION)) {
+                assertEquals(table, readTable(full, table), readTable(incremental, table));
+            }
+
+            // groups of the initial run are not exported again, except the open one.
+            for (String table : Arrays.asList(FileRelationExporter.TABLE_GROUP, FileRelationExporter.TABLE_REVISION,
+                    FileRelationExporter.TABLE_FILE)) {
+                Set<String> expected = new HashSet<>(readTable(full, table));
+                Set<String> merged = new HashSet<>(readTable(new File(output, "initial"), table));
+                merged.addAll(readTable(incremental, table));
+
+                assertTrue(table, merged.containsAll(expected));
+                assertTrue(table, expected.containsAll(readTable(incremental, table)));
+                assertTrue(table, readTable(incremental, table).size() < expected.size());
+            }
+
+            rename(incremental, "second");
+            rename(full, "second_full");
+
+            // a branch from an old commit, dated before the saved state, is merged.
+            git.checkout().setCreateBranch(true).setName("topic").setStartPoint(commits.get(5)).call();
+
+            for (int i = 0; i < 5; i++) {
+                commit(git, random, "src/b", commits.get(5).getCommitTime() * 1000L + (i + 1) * GAPS[0]);
+            }
+
+            git.checkout().setName("master").call();
+            MergeResult result = git.merge().include(git.getRepository().resolve("topic")).call();
+            assertTrue(result.getMergeStatus().isSuccessful());
+            commits.add(commit(git, random, "src/a", time));
+
+            incremental = run(url, backend, output, "incremental", true);
+            full = run(url, backend, output, "full", false);
+
+            for (String table : Arrays.asList(FileRelationExporter.TABLE_PAIR, FileRelationExporter.TABLE_ACCUMULATED,
+                    FileRelationExporter.TABLE_LATEST_REVISION, FileRelationExporter.TABLE_GROUP,
+                    FileRelationExporter.TABLE_REVISION, FileRelationExporter.TABLE_FILE)) {
+                assertEquals(table, readTable(full, table), readTable(incremental, table));
+            }
+        }
+    }
+
+    // commits 1 to 3 files of the directory at the time.
+    private static RevCommit commit(Git git, Random random, String directory, long time) throws Exception {
+        int count = 1 + random.nextInt(3);
+
+        for (int i = 0; i < count; i++) {
+            File file = new File(git.getRepository().getWorkTree(),
+                    directory + "/F" + random.nextInt(FILE_COUNT) + ".java");
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), Long.toString(random.nextLong()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        PersonIdent person = new PersonIdent("author", "author@example.com", new Date(time),
+                TimeZone.getTimeZone("UTC"));
+        git.add().addFilepattern(".").call();
+
+        return git.commit().setAuthor(person).setCommitter(person).setMessage("commit at " + time).call();
+    }
+
+    // runs the extraction with the csv export named in the output directory.
+    private static File run(String url, CommandOptions.GitBackend backend, File output, String name,
+                            boolean incremental) throws Exception {
+        File file = new File(output, name);
+        List<String> arguments = new ArrayList<>(Arrays.asList(url,
+                CommandOptions.PARAMETER_SHORT_EXPORT_FILE_NAME, file.getPath(),
+                CommandOptions.PARAMETER_SHORT_GIT_BACKEND, backend.name(),
+                CommandOptions.PARAMETER_SHORT_SLIDING_WINDOW_SIZE, WINDOW_SIZE));
+
+        if (incremental) {
+            arguments.add(CommandOptions.PARAMETER_SHORT_INCREMENTAL);
+        }
+
+        CommandOptions options = new CommandOptions();
+        new JCommander(options).parse(arguments.toArray(new String[arguments.size()]));
+        new CommandExecutor().run(options);
+
+        return file;
+    }
+
+    // the export directory is moved, so the next run is exported to the same name with the same state.
+    private static void rename(File file, String name) throws IOException {
+        Files.move(file.toPath(), new File(file.getParentFile(), name).toPath());
+    }
+
+    // sorted rows of the table, without the header.
+    private static List<String> readTable(File directory, String table) throws IOException {
+        List<String> lines = Files.readAllLines(new File(directory, table + ".csv").toPath());
+        List<String> rows = new ArrayList<>(lines.subList(1, lines.size()));
+        Collections.sort(rows);
+
+        return rows;
+    }
+}
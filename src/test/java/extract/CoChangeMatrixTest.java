@@ -0,0 +1,99 @@
+package extract;
+
+import model.FileDictionary;
+import model.FileName;
+import model.PathDictionary;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+// the queries of the matrix are compared with a hash map of the pairs.
+public class CoChangeMatrixTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testQueries() {
+        Random random = new Random(20);
+
+        for (int t = 0; t < 100; t++) {
+            int fileCount = 1 + random.nextInt(30);
+            FileDictionary dictionary = new FileDictionary();
+            PathDictionary pathDictionary = new PathDictionary();
+
+            for (int id = 0; id < fileCount; id++) {
+                dictionary.intern(new FileName("d" + id % 4 + "/f" + id + ".java", pathDictionary));
+            }
+
+            SpillablePairCountMap pairs = new SpillablePairCountMap(dictionary, random.nextInt(10), folder.getRoot());
+            Map<Long, Integer> expected = new HashMap<>();
+
+            for (int i = random.nextInt(200); i > 0; i--) {
+                int a = random.nextInt(fileCount), b = random.nextInt(fileCount);
+
+                if (a != b) {
+                    int count = 1 + random.nextInt(4);
+                    expected.merge(PairCountMap.pack(a, b), count, Integer::sum);
+                    pairs.add(PairCountMap.pack(a, b), count);
+                }
+            }
+
+            CoChangeMatrix matrix = new CoChangeMatrix(dictionary, pairs.cursor());
+            pairs.close();
+
+            assertEquals(fileCount, matrix.size());
+
+            for (int a = -1; a <= fileCount; a++) {
+                List<Integer> neighbors = new ArrayList<>();
+
+                for (int b = -1; b <= fileCount; b++) {
+                    int count = a == b ? 0 : expected.getOrDefault(PairCountMap.pack(a, b), 0);
+                    assertEquals(count, matrix.count(a, b));
+
+                    if (count > 0) {
+                        neighbors.add(b);
+                    }
+                }
+
+                assertArrayEquals(toArray(neighbors), matrix.neighbors(a));
+                assertEquals(neighbors.size(), matrix.degree(a));
+
+                // descending counts, then ascending ids
+                int from = a;
+                neighbors.sort(Comparator.comparing((Integer b) -> -expected.get(PairCountMap.pack(from, b)))
+                        .thenComparing(b -> b));
+
+                for (int k = 0; k <= neighbors.size() + 1; k++) {
+                    assertArrayEquals(toArray(neighbors.subList(0, Math.min(k, neighbors.size()))), matrix.topN(a, k));
+                }
+
+                if (a >= 0 && a < fileCount) {
+                    FileName file = dictionary.getFile(a);
+                    List<FileName> files = new ArrayList<>();
+
+                    for (int b : neighbors) {
+                        files.add(dictionary.getFile(b));
+                    }
+
+                    assertEquals(files, matrix.topN(file, neighbors.size()));
+                    assertEquals(new TreeSet<>(files), new TreeSet<>(matrix.neighbors(file)));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTopN() {
+        new CoChangeMatrix(new FileDictionary(), new SpillablePairCountMap(new FileDictionary(), 0, null).cursor())
+                .topN(0, -1);
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
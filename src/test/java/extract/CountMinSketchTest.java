@@ -0,0 +1,46 @@
+package extract;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertTrue;
+
+// estimates of small sketches full of collisions are compared with the exact counts.
+public class CountMinSketchTest {
+    @Test
+    public void testNeverUnderestimates() {
+        Random random = new Random(17);
+
+        for (int t = 0; t < 200; t++) {
+            CountMinSketch sketch = new CountMinSketch(1 + random.nextInt(4), 1 + random.nextInt(64));
+            Map<Long, Integer> expected = new HashMap<>();
+
+            for (int i = random.nextInt(1000); i > 0; i--) {
+                long key = PairCountMap.pack(random.nextInt(50), random.nextInt(50));
+                int count = 1 + random.nextInt(3);
+                expected.merge(key, count, Integer::sum);
+                sketch.add(key, count);
+            }
+
+            for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+                assertTrue(sketch.estimate(entry.getKey()) >= entry.getValue());
+            }
+        }
+    }
+
+    // one sketch is shared by the threads of the extractor.
+    @Test
+    public void testConcurrentAdds() {
+        CountMinSketch sketch = new CountMinSketch(4, 1 << 12);
+
+        IntStream.range(0, 400000).parallel().forEach(i -> sketch.add(PairCountMap.pack(i % 100, i % 7)));
+
+        for (int i = 0; i < 700; i++) {
+            assertTrue(sketch.estimate(PairCountMap.pack(i % 100, i % 7)) >= 400000 / 700);
+        }
+    }
+}
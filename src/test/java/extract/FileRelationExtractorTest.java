@@ -0,0 +1,197 @@
+package extract;
+
+import model.AccumulatedEntity;
+import model.CountEntity;
+import model.FileName;
+import model.PairEntity;
+import model.PathDictionary;
+import model.RevisionGroup;
+import model.RevisionStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+// the extractor is compared with itself in the sequential mode, and with counts over the paths of the groups.
+public class FileRelationExtractorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // the partial results of the threads are summed up, so the output is the same as the sequential one.
+    @Test
+    public void testParallel() {
+        Random random = new Random(15);
+
+        for (int t = 0; t < 30; t++) {
+            List<RevisionGroup> groups = randomGroups(random, new ArrayList<>());
+            int maxPairs = random.nextBoolean() ? 0 : 1 + random.nextInt(20);
+
+            List<String> expected = describe(new FileRelationExtractor(groups)
+                    .setMaxPairsInMemory(maxPairs, folder.getRoot()));
+
+            for (int parallelism = 2; parallelism <= 4; parallelism++) {
+                assertEquals(expected, describe(new FileRelationExtractor(groups)
+                        .setParallelism(parallelism)
+                        .setMaxPairsInMemory(maxPairs, folder.getRoot())));
+            }
+        }
+    }
+
+    // the sketch only overestimates the counts, so no pair reaching the minimum count is dropped.
+    // small limits of the pairs in memory make the sketch small too.
+    @Test
+    public void testMinPairCount() {
+        Random random = new Random(16);
+
+        for (int t = 0; t < 30; t++) {
+            List<Set<String>> groupPaths = new ArrayList<>();
+            List<RevisionGroup> groups = randomGroups(random, groupPaths);
+            int minPairCount = 1 + random.nextInt(4);
+            Map<String, Integer> expected = new TreeMap<>();
+
+            for (Map.Entry<String, Integer> entry : countPairs(groupPaths).entrySet()) {
+                if (entry.getValue() >= minPairCount) {
+                    expected.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            FileRelationExtractor extractor = new FileRelationExtractor(groups)
+                    .setParallelism(1 + random.nextInt(3))
+                    .setMaxPairsInMemory(random.nextBoolean() ? 0 : 1 + random.nextInt(20), folder.getRoot())
+                    .setMinPairCount(minPairCount);
+
+            assertEquals(expected, getPairCounts(extractor));
+        }
+    }
+
+    // metrics of the pairs computed from the groups containing the files.
+    @Test
+    public void testMetrics() {
+        Random random = new Random(21);
+
+        for (int t = 0; t < 30; t++) {
+            List<Set<String>> groupPaths = new ArrayList<>();
+            FileRelationExtractor extractor = new FileRelationExtractor(randomGroups(random, groupPaths));
+            Map<String, Integer> pairCounts = countPairs(groupPaths);
+            Map<String, Integer> groupCounts = new HashMap<>();
+            double total = groupPaths.size();
+
+            for (Set<String> paths : groupPaths) {
+                for (String path : paths) {
+                    groupCounts.merge(path, 1, Integer::sum);
+                }
+            }
+
+            int pairCount = 0;
+
+            for (Iterator<PairEntity> pairs = extractor.getPairEntityIterator(); pairs.hasNext(); pairCount++) {
+                PairEntity pair = pairs.next();
+                String from = pair.getFrom().toString(), to = pair.getTo().toString();
+                double count = pairCounts.get(from.compareTo(to) < 0 ? from + " " + to : to + " " + from);
+                double fromCount = groupCounts.get(from), toCount = groupCounts.get(to);
+
+                assertEquals(count, pair.getCount(), 0);
+                assertEquals(count / total, pair.getSupport(), 1e-12);
+                assertEquals(count / fromCount, pair.getConfidence(), 1e-12);
+                assertEquals(count / toCount, pair.getReverseConfidence(), 1e-12);
+                assertEquals(count / total / (fromCount / total * toCount / total), pair.getLift(), 1e-9);
+                assertEquals(count / (fromCount + toCount - count), pair.getJaccard(), 1e-12);
+            }
+
+            extractor.close();
+
+            assertEquals(pairCounts.size(), pairCount);
+        }
+    }
+
+    // K: the paths of the pair in the ascending order, V: the number of groups containing both.
+    private static Map<String, Integer> countPairs(List<Set<String>> groupPaths) {
+        Map<String, Integer> result = new TreeMap<>();
+
+        for (Set<String> paths : groupPaths) {
+            for (String a : paths) {
+                for (String b : paths) {
+                    if (a.compareTo(b) < 0) {
+                        result.merge(a + " " + b, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    // pair counts of the extractor like countPairs(). the extractor is closed.
+    private static Map<String, Integer> getPairCounts(FileRelationExtractor extractor) {
+        Map<String, Integer> result = new TreeMap<>();
+
+        for (Iterator<PairEntity> pairs = extractor.getPairEntityIterator(); pairs.hasNext(); ) {
+            PairEntity pair = pairs.next();
+            String from = pair.getFrom().toString(), to = pair.getTo().toString();
+            result.put(from.compareTo(to) < 0 ? from + " " + to : to + " " + from, pair.getCount());
+        }
+
+        extractor.close();
+
+        return result;
+    }
+
+    // the pairs with their metrics, and the accumulated counts of the files. the extractor is closed.
+    private static List<String> describe(FileRelationExtractor extractor) {
+        List<String> result = new ArrayList<>();
+
+        for (Iterator<PairEntity> pairs = extractor.getPairEntityIterator(); pairs.hasNext(); ) {
+            PairEntity pair = pairs.next();
+            result.add(pair.getFrom() + " " + pair.getTo() + " " + pair.getCount() + " " + pair.getSupport() + " "
+                    + pair.getConfidence() + " " + pair.getReverseConfidence() + " " + pair.getLift() + " "
+                    + pair.getJaccard());
+        }
+
+        for (Map.Entry<FileName, AccumulatedEntity> entry : extractor.getAccumulatedEntities().entrySet()) {
+            for (Map.Entry<Long, CountEntity> count : entry.getValue().getCounts().entrySet()) {
+                result.add(entry.getKey() + " " + count.getKey() + " " + count.getValue().getSameCount() + " "
+                        + count.getValue().getOtherCount());
+            }
+        }
+
+        extractor.close();
+
+        return result;
+    }
+
+    // groups of one to three revisions in the order of time. the paths of each group are added to the list.
+    private static List<RevisionGroup> randomGroups(Random random, List<Set<String>> groupPaths) {
+        PathDictionary dictionary = new PathDictionary();
+        RevisionStore store = new RevisionStore();
+        List<RevisionGroup> groups = new ArrayList<>();
+        int fileCount = 2 + random.nextInt(40);
+        long time = 1500000000000L;
+
+        for (int g = random.nextInt(80); g >= 0; g--) {
+            int[] indices = new int[1 + random.nextInt(3)];
+            Set<String> paths = new TreeSet<>();
+
+            for (int i = 0; i < indices.length; i++) {
+                List<FileName> files = new ArrayList<>();
+
+                for (int j = 1 + random.nextInt(6); j > 0; j--) {
+                    int file = random.nextInt(fileCount);
+                    String path = "d" + file % 3 + "/f" + file + ".java";
+                    files.add(new FileName(path, dictionary));
+                    paths.add(path);
+                }
+
+                time += 1000 + random.nextInt(100000);
+                indices[i] = store.add("r" + time, time, "a" + random.nextInt(2), "message", files);
+            }
+
+            groups.add(new RevisionGroup(groups.size() + 1, store, indices));
+            groupPaths.add(paths);
+        }
+
+        return groups;
+    }
+}
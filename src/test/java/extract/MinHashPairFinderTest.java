@@ -0,0 +1,149 @@
+package extract;
+
+import model.FileDictionary;
+import model.FileName;
+import model.PathDictionary;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// the candidates are compared with the exact counts and jaccard similarities of every pair.
+public class MinHashPairFinderTest {
+    // candidates are counted exactly, and equal file sets always share their signatures.
+    @Test
+    public void testCandidates() {
+        Random random = new Random(18);
+
+        for (int t = 0; t < 50; t++) {
+            int fileCount = 2 + random.nextInt(60);
+            List<int[]> groups = randomGroups(random, fileCount);
+            Map<Long, Integer> counts = countPairs(groups);
+            int[] groupCounts = countGroups(groups, fileCount);
+            MinHashPairFinder finder = newFinder(fileCount, groups, 1 + random.nextInt(8), 1 + random.nextInt(4));
+            Set<Long> found = new HashSet<>();
+
+            for (PairCursor cursor = finder.find().cursor(); cursor.next(); ) {
+                long pair = PairCountMap.pack(cursor.getFrom(), cursor.getTo());
+
+                assertEquals(counts.get(pair).intValue(), cursor.getCount());
+                found.add(pair);
+            }
+
+            for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+                int high = PairCountMap.high(entry.getKey()), low = PairCountMap.low(entry.getKey());
+
+                if (entry.getValue() == groupCounts[high] && entry.getValue() == groupCounts[low]) {
+                    assertTrue(found.contains(entry.getKey()));
+                    assertEquals(1.0, finder.getSimilarity(high, low), 0);
+                }
+            }
+        }
+    }
+
+    // with one row in a band, a pair of similarity s is missed with the probability of (1 - s) ^ bands.
+    // the similarities estimated by the signatures are close to the exact ones.
+    @Test
+    public void testSimilarities() {
+        Random random = new Random(19);
+        double error = 0;
+        int pairCount = 0;
+
+        for (int t = 0; t < 20; t++) {
+            int fileCount = 2 + random.nextInt(30);
+            List<int[]> groups = randomGroups(random, fileCount);
+            Map<Long, Integer> counts = countPairs(groups);
+            int[] groupCounts = countGroups(groups, fileCount);
+            MinHashPairFinder finder = newFinder(fileCount, groups, 128, 1);
+            Set<Long> found = new HashSet<>();
+
+            for (PairCursor cursor = finder.find().cursor(); cursor.next(); ) {
+                int count = cursor.getCount(), from = cursor.getFrom(), to = cursor.getTo();
+                double jaccard = (double) count / (groupCounts[from] + groupCounts[to] - count);
+
+                error += Math.abs(finder.getSimilarity(from, to) - jaccard);
+                pairCount++;
+                found.add(PairCountMap.pack(from, to));
+            }
+
+            for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+                int count = entry.getValue();
+                int high = PairCountMap.high(entry.getKey()), low = PairCountMap.low(entry.getKey());
+
+                if (count * 2 >= groupCounts[high] + groupCounts[low] - count) {
+                    assertTrue(found.contains(entry.getKey()));
+                }
+            }
+        }
+
+        assertTrue(error / pairCount < 0.05);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoBands() {
+        new MinHashPairFinder(new FileDictionary(), 0, 1);
+    }
+
+    private static MinHashPairFinder newFinder(int fileCount, List<int[]> groups, int bands, int rows) {
+        PathDictionary pathDictionary = new PathDictionary();
+        FileDictionary dictionary = new FileDictionary();
+
+        for (int id = 0; id < fileCount; id++) {
+            dictionary.intern(new FileName("f" + id + ".java", pathDictionary));
+        }
+
+        MinHashPairFinder finder = new MinHashPairFinder(dictionary, bands, rows);
+
+        for (int[] group : groups) {
+            finder.addGroup(group);
+        }
+
+        return finder;
+    }
+
+    // distinct file ids of each group. some files change together more often than the others.
+    private static List<int[]> randomGroups(Random random, int fileCount) {
+        List<int[]> groups = new ArrayList<>();
+
+        for (int g = random.nextInt(200); g >= 0; g--) {
+            Set<Integer> ids = new TreeSet<>();
+            int base = random.nextInt(fileCount);
+
+            for (int i = 1 + random.nextInt(5); i > 0; i--) {
+                ids.add(random.nextInt(4) == 0 ? random.nextInt(fileCount) : (base + random.nextInt(3)) % fileCount);
+            }
+
+            groups.add(ids.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        return groups;
+    }
+
+    private static Map<Long, Integer> countPairs(List<int[]> groups) {
+        Map<Long, Integer> result = new HashMap<>();
+
+        for (int[] group : groups) {
+            for (int i = 0; i < group.length; i++) {
+                for (int j = i + 1; j < group.length; j++) {
+                    result.merge(PairCountMap.pack(group[i], group[j]), 1, Integer::sum);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static int[] countGroups(List<int[]> groups, int fileCount) {
+        int[] result = new int[fileCount];
+
+        for (int[] group : groups) {
+            for (int id : group) {
+                result[id]++;
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package extract;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// the pair count map is compared with a hash map of the packed pairs.
+public class PairCountMapTest {
+    @Test
+    public void testPack() {
+        long key = PairCountMap.pack(3, 7);
+
+        assertEquals(key, PairCountMap.pack(7, 3));
+        assertEquals(7, PairCountMap.high(key));
+        assertEquals(3, PairCountMap.low(key));
+    }
+
+    @Test
+    public void testRandomCounts() {
+        Random random = new Random(2);
+
+        for (int t = 0; t < 50; t++) {
+            PairCountMap map = new PairCountMap(random.nextInt(100));
+            PairCountMap other = new PairCountMap();
+            Map<Long, Integer> expected = new HashMap<>();
+            int fileCount = 1 + random.nextInt(200);
+
+            for (int i = random.nextInt(5000); i > 0; i--) {
+                int a = random.nextInt(fileCount), b = random.nextInt(fileCount);
+                expected.merge(PairCountMap.pack(a, b), 1, Integer::sum);
+
+                if (random.nextBoolean()) {
+                    map.increment(a, b);
+                } else {
+                    other.increment(b, a);
+                }
+            }
+
+            map.addAll(other);
+
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected, toMap(map));
+
+            for (int i = 0; i < 100; i++) {
+                int a = random.nextInt(fileCount * 2), b = random.nextInt(fileCount * 2);
+                assertEquals(expected.getOrDefault(PairCountMap.pack(a, b), 0).intValue(), map.get(a, b));
+            }
+
+            map.clear();
+
+            assertEquals(0, map.size());
+            assertEquals(Collections.emptyMap(), toMap(map));
+        }
+    }
+
+    private static Map<Long, Integer> toMap(PairCountMap map) {
+        Map<Long, Integer> result = new HashMap<>();
+
+        map.forEach((key, count) -> assertNull(result.put(key, count)));
+
+        return result;
+    }
+}
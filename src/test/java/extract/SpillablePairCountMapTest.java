@@ -0,0 +1,105 @@
+package extract;
+
+import model.FileDictionary;
+import model.FileName;
+import model.PathDictionary;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+// the cursor of the spilled runs is compared with a hash map of the pairs sorted by their file names.
+public class SpillablePairCountMapTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // small limits spill runs, and the runs of merged maps are compacted.
+    @Test
+    public void testSpilledCursor() {
+        Random random = new Random(3);
+
+        for (int t = 0; t < 30; t++) {
+            FileDictionary dictionary = randomDictionary(random, 1 + random.nextInt(60));
+            int maxPairs = random.nextInt(20);
+            Map<Long, Integer> expected = new HashMap<>();
+            List<SpillablePairCountMap> maps = new ArrayList<>();
+
+            for (int m = 1 + random.nextInt(4); m > 0; m--) {
+                SpillablePairCountMap map = new SpillablePairCountMap(dictionary, maxPairs, folder.getRoot());
+
+                for (int i = random.nextInt(2000); i > 0; i--) {
+                    int a = random.nextInt(dictionary.size()), b = random.nextInt(dictionary.size());
+
+                    if (a != b) {
+                        int count = 1 + random.nextInt(3);
+                        expected.merge(PairCountMap.pack(a, b), count, Integer::sum);
+                        map.add(PairCountMap.pack(a, b), count);
+                    }
+                }
+
+                maps.add(map);
+            }
+
+            SpillablePairCountMap merged = maps.get(0);
+
+            for (int m = 1; m < maps.size(); m++) {
+                merged.addAll(maps.get(m));
+                maps.get(m).close();
+            }
+
+            List<String> expectedPairs = new ArrayList<>();
+            List<String> pairs = new ArrayList<>();
+
+            for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+                FileName high = dictionary.getFile(PairCountMap.high(entry.getKey()));
+                FileName low = dictionary.getFile(PairCountMap.low(entry.getKey()));
+                boolean highIsFrom = high.compareTo(low) > 0;
+                expectedPairs.add(toString(highIsFrom ? high : low, highIsFrom ? low : high, entry.getValue()));
+            }
+
+            expectedPairs.sort(null);
+
+            for (PairCursor cursor = merged.cursor(); cursor.next(); ) {
+                pairs.add(toString(dictionary.getFile(cursor.getFrom()), dictionary.getFile(cursor.getTo()),
+                        cursor.getCount()));
+            }
+
+            merged.close();
+
+            assertEquals(expectedPairs, pairs);
+            assertEquals(0, folder.getRoot().list().length);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxPairs() {
+        new SpillablePairCountMap(new FileDictionary(), -1, null);
+    }
+
+    // the separator is less than the characters of the paths, so the strings sort like the pairs.
+    private static String toString(FileName from, FileName to, int count) {
+        return from + "\t" + to + "\t" + count;
+    }
+
+    private static FileDictionary randomDictionary(Random random, int size) {
+        PathDictionary pathDictionary = new PathDictionary();
+        FileDictionary dictionary = new FileDictionary();
+        String[] segments = {"a/", "b/", "ab/", "a.b/", "é/"};
+
+        while (dictionary.size() < size) {
+            StringBuilder path = new StringBuilder();
+
+            for (int i = random.nextInt(4); i > 0; i--) {
+                path.append(segments[random.nextInt(segments.length)]);
+            }
+
+            path.append("f").append(random.nextInt(size * 2)).append(random.nextBoolean() ? ".java" : ".c");
+            dictionary.intern(new FileName(path.toString(), pathDictionary));
+        }
+
+        return dictionary;
+    }
+}
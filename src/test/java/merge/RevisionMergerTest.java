@@ -0,0 +1,198 @@
+package merge;
+
+import model.FileName;
+import model.PathDictionary;
+import model.Revision;
+import model.RevisionGroup;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+// the mergers are compared with simple groupings of the revisions sorted by time.
+// times are distinct, so the order of time is the same for both.
+public class RevisionMergerTest {
+    private static final String[] AUTHORS = {"alice", "bob", "carol"};
+    private static final String[] MESSAGES = {"fix", "ABC-1 fix", "see ABC-2", "ABC-1 and XY-3", "XY-3", "abc-1"};
+
+    @Test
+    public void testSlidingWindowMerger() {
+        Random random = new Random(4);
+
+        for (int t = 0; t < 200; t++) {
+            List<Revision> revisions = randomRevisions(random);
+            long windowSize = random.nextInt(6);
+            boolean duplicated = random.nextBoolean();
+
+            RevisionMerger merger = new SlidingWindowMerger()
+                    .setWindowSizeInSecond(windowSize)
+                    .setAllowDuplicated(duplicated);
+
+            assertGroups(slidingWindow(sortByTime(revisions), windowSize, duplicated), merger, revisions);
+        }
+    }
+
+    @Test
+    public void testDistanceMerger() {
+        Random random = new Random(5);
+
+        for (int t = 0; t < 200; t++) {
+            List<Revision> revisions = randomRevisions(random);
+            long windowSize = random.nextInt(6);
+
+            RevisionMerger merger = new DistanceMerger().setWindowSizeInSecond(windowSize);
+
+            assertGroups(sameAuthorRuns(sortByTime(revisions)), merger, revisions);
+        }
+    }
+
+    @Test
+    public void testAuthorPartitionedMerger() {
+        Random random = new Random(6);
+
+        for (int t = 0; t < 200; t++) {
+            List<Revision> revisions = randomRevisions(random);
+            long windowSize = random.nextInt(6);
+            boolean duplicated = random.nextBoolean();
+            List<List<String>> expected = new ArrayList<>();
+
+            Map<String, List<Revision>> partitions = sortByTime(revisions).stream()
+                    .collect(Collectors.groupingBy(Revision::getAuthor));
+
+            for (List<Revision> partition : partitions.values()) {
+                expected.addAll(slidingWindow(partition, windowSize, duplicated));
+            }
+
+            RevisionMerger merger = new AuthorPartitionedMerger(new SlidingWindowMerger()
+                    .setWindowSizeInSecond(windowSize)
+                    .setAllowDuplicated(duplicated))
+                    .setParallelism(1 + random.nextInt(3));
+
+            assertGroups(sortByHead(expected, revisions), merger, revisions);
+        }
+    }
+
+    @Test
+    public void testTicketMerger() {
+        Random random = new Random(7);
+        Pattern pattern = Pattern.compile(TicketMerger.DEFAULT_TICKET_PATTERN);
+
+        for (int t = 0; t < 200; t++) {
+            List<Revision> revisions = randomRevisions(random);
+            Map<String, List<String>> keyGroups = new LinkedHashMap<>();
+            List<List<String>> expected = new ArrayList<>();
+
+            for (Revision revision : sortByTime(revisions)) {
+                Matcher matcher = pattern.matcher(revision.getMessage());
+
+                if (matcher.find()) {
+                    keyGroups.computeIfAbsent(matcher.group(), key -> new ArrayList<>()).add(revision.getId());
+                } else {
+                    expected.add(Collections.singletonList(revision.getId()));
+                }
+            }
+
+            expected.addAll(keyGroups.values());
+
+            assertGroups(sortByHead(expected, revisions), new TicketMerger(), revisions);
+        }
+    }
+
+    // groups of the stream and the merged set, as the ids of the revisions in the order of head time.
+    private static void assertGroups(List<List<String>> expected, RevisionMerger merger, List<Revision> revisions) {
+        merger.setRevisions(revisions);
+        assertEquals(expected, toIds(merger.merge()));
+
+        merger.setRevisions(revisions);
+        assertEquals(expected, toIds(merger.stream().collect(Collectors.toList())));
+    }
+
+    private static List<List<String>> toIds(Collection<RevisionGroup> groups) {
+        List<List<String>> result = new ArrayList<>();
+
+        for (RevisionGroup group : groups) {
+            result.add(sortByTime(new ArrayList<>(group.getRevisions())).stream().map(Revision::getId).collect(Collectors.toList()));
+        }
+
+        return result;
+    }
+
+    // windows start at the head, and end at the first revision of another author or out of the window.
+    private static List<List<String>> slidingWindow(List<Revision> sorted, long windowSize, boolean duplicated) {
+        List<List<String>> result = new ArrayList<>();
+        int headIndex = 0;
+
+        while (headIndex < sorted.size()) {
+            Revision head = sorted.get(headIndex);
+            List<String> group = new ArrayList<>();
+            int nextIndex = headIndex;
+
+            while (nextIndex < sorted.size()
+                    && sorted.get(nextIndex).getTime() <= head.getTime() + windowSize * 1000
+                    && sorted.get(nextIndex).getAuthor().equals(head.getAuthor())) {
+                group.add(sorted.get(nextIndex++).getId());
+            }
+
+            result.add(group);
+            headIndex = duplicated ? headIndex + 1 : nextIndex;
+        }
+
+        return result;
+    }
+
+    // the distance merger doesn't move the time of the previous revision, so only the authors cut the groups.
+    private static List<List<String>> sameAuthorRuns(List<Revision> sorted) {
+        List<List<String>> result = new ArrayList<>();
+
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i == 0 || !sorted.get(i).getAuthor().equals(sorted.get(i - 1).getAuthor())) {
+                result.add(new ArrayList<>());
+            }
+
+            result.get(result.size() - 1).add(sorted.get(i).getId());
+        }
+
+        return result;
+    }
+
+    private static List<List<String>> sortByHead(List<List<String>> groups, List<Revision> revisions) {
+        Map<String, Long> times = new HashMap<>();
+
+        for (Revision revision : revisions) {
+            times.put(revision.getId(), revision.getTime());
+        }
+
+        groups.sort(Comparator.comparing(group -> times.get(group.get(0))));
+
+        return groups;
+    }
+
+    private static List<Revision> sortByTime(List<Revision> revisions) {
+        List<Revision> sorted = new ArrayList<>(revisions);
+        sorted.sort(Comparator.comparingLong(Revision::getTime));
+
+        return sorted;
+    }
+
+    private static List<Revision> randomRevisions(Random random) {
+        PathDictionary dictionary = new PathDictionary();
+        List<Revision> revisions = new ArrayList<>();
+        long time = 1500000000000L;
+
+        for (int i = random.nextInt(60); i >= 0; i--) {
+            time += 1 + random.nextInt(3000);
+            Revision revision = new Revision("r" + random.nextInt(1000) + "_" + i, time,
+                    AUTHORS[random.nextInt(AUTHORS.length)], MESSAGES[random.nextInt(MESSAGES.length)]);
+            revision.addFile(new FileName("src/f" + random.nextInt(10) + ".java", dictionary));
+            revisions.add(revision);
+        }
+
+        Collections.shuffle(revisions, random);
+
+        return revisions;
+    }
+}
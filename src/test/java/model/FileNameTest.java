@@ -0,0 +1,71 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// file names sharing the directory nodes are compared with the lowercased path strings,
+// in the same dictionary and across dictionaries.
+public class FileNameTest {
+    private static final String[] SEGMENTS = {"a/", "A/", "ab/", "a.b/", "b/", "é/", "a-/", "/"};
+    private static final String[] LEAVES = {"", "a", "a.java", "A.JAVA", "b.c", ".a", "a.", "é.java", "a.b.c"};
+
+    @Test
+    public void testRandomPaths() {
+        Random random = new Random(23);
+        PathDictionary dictionary = new PathDictionary(), otherDictionary = new PathDictionary();
+        List<String> paths = new ArrayList<>();
+        List<FileName> names = new ArrayList<>();
+        List<PathDictionary> dictionaries = new ArrayList<>();
+
+        for (int i = 0; i < 400; i++) {
+            StringBuilder path = new StringBuilder();
+
+            for (int j = random.nextInt(4); j > 0; j--) {
+                path.append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+            }
+
+            path.append(LEAVES[random.nextInt(LEAVES.length)]);
+
+            String lowerPath = path.toString().toLowerCase();
+            PathDictionary nameDictionary = random.nextInt(4) == 0 ? otherDictionary : dictionary;
+            FileName name = new FileName(path.toString(), nameDictionary);
+            int leafIndex = lowerPath.lastIndexOf('/') + 1;
+            String leaf = lowerPath.substring(leafIndex);
+
+            assertEquals(lowerPath, name.toString());
+            assertEquals(leafIndex == 0 ? "/" : lowerPath.substring(0, leafIndex), name.getParent());
+            assertEquals(leaf.lastIndexOf('.') < 0 ? leaf : leaf.substring(0, leaf.lastIndexOf('.')), name.getName());
+            assertEquals(leaf.lastIndexOf('.') < 0 ? "" : leaf.substring(leaf.lastIndexOf('.') + 1), name.getExtension());
+
+            paths.add(lowerPath);
+            names.add(name);
+            dictionaries.add(nameDictionary);
+        }
+
+        for (int i = 0; i < names.size(); i++) {
+            for (int j = 0; j < names.size(); j++) {
+                FileName name = names.get(i), other = names.get(j);
+                String message = paths.get(i) + " " + paths.get(j);
+
+                assertEquals(message, Integer.signum(paths.get(i).compareTo(paths.get(j))),
+                        Integer.signum(name.compareTo(other)));
+                assertEquals(message, paths.get(i).equals(paths.get(j)), name.equals(other));
+
+                if (name.equals(other)) {
+                    assertEquals(message, name.hashCode(), other.hashCode());
+                }
+
+                // parent ids are numbered by each dictionary.
+                if (dictionaries.get(i) == dictionaries.get(j)) {
+                    assertEquals(message, name.getParent().equals(other.getParent()),
+                            name.getParentId() == other.getParentId());
+                }
+            }
+        }
+    }
+}
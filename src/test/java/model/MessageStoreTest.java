@@ -0,0 +1,58 @@
+package model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// messages are read back while they're appended, from the buffer and from the temp file.
+public class MessageStoreTest {
+    private static final String[] CHARACTERS = {"a", "b", " ", "\n", "\0", "é", "日", "😀"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(22);
+
+        for (int t = 0; t < 100; t++) {
+            MessageStore store = new MessageStore(random.nextInt(300), folder.getRoot());
+            List<String> messages = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+
+            for (int i = random.nextInt(300); i > 0; i--) {
+                int maxLength = random.nextInt(20) == 0 ? 2000 : 30;
+                String message = random.nextInt(10) == 0 ? null : randomString(random, maxLength);
+                messages.add(message);
+                offsets.add(store.append(message));
+
+                int j = random.nextInt(messages.size());
+                assertEquals(messages.get(j), store.read(offsets.get(j)));
+            }
+
+            for (int j = 0; j < messages.size(); j++) {
+                assertEquals(messages.get(j), store.read(offsets.get(j)));
+            }
+
+            store.close();
+
+            assertEquals(0, folder.getRoot().list().length);
+        }
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+            builder.append(CHARACTERS[random.nextInt(CHARACTERS.length)]);
+        }
+
+        return builder.toString();
+    }
+}